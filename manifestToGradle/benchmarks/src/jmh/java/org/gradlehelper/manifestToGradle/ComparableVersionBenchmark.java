@@ -0,0 +1,57 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gradlehelper.manifestToGradle.tools.ComparableVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing and comparing maven versions, used for ranking maven central results and version ranges.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComparableVersionBenchmark {
+    private ComparableVersion[] parsed;
+
+    @Setup
+    public void setup() {
+        parsed = new ComparableVersion[OpenhabPackages.VERSIONS.length];
+        for (int i = 0; i < parsed.length; ++i) {
+            parsed[i] = new ComparableVersion(OpenhabPackages.VERSIONS[i]);
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String version : OpenhabPackages.VERSIONS) {
+            blackhole.consume(new ComparableVersion(version));
+        }
+    }
+
+    @Benchmark
+    public int compare() {
+        int result = 0;
+        for (int i = 1; i < parsed.length; ++i) {
+            result += parsed[i - 1].compareTo(parsed[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int parseAndCompare() {
+        int result = 0;
+        for (int i = 1; i < OpenhabPackages.VERSIONS.length; ++i) {
+            result += new ComparableVersion(OpenhabPackages.VERSIONS[i - 1])
+                    .compareTo(new ComparableVersion(OpenhabPackages.VERSIONS[i]));
+        }
+        return result;
+    }
+}
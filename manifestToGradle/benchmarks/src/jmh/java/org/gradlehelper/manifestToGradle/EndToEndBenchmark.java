@@ -0,0 +1,78 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the whole pipeline of {@link Main} on a freshly generated {@link SyntheticRepository}. The pipeline modifies
+ * the repository, so every invocation gets its own tree. Maven central is not used, package names that are not
+ * covered by the resolver rules are guessed. The console output of the pipeline is discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class EndToEndBenchmark {
+    @Param({ "500", "5000" })
+    public int bundles;
+
+    @Param({ "1", "0" })
+    public int jobs;
+
+    private Path root;
+
+    @Setup(Level.Invocation)
+    public void generate() throws IOException {
+        root = Files.createTempDirectory("synthetic-repository");
+        new SyntheticRepository(root, bundles, 42).generate();
+    }
+
+    @TearDown(Level.Invocation)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void convert() throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            Main.main(new String[] { "-i", root.toString(), "--use-maven-central=false",
+                    "--enable-maven-coordinate-guess", "--jobs=" + jobs });
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gradlehelper.manifestToGradle.tools.DependencyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Similarity of maven groups and package names, used to rank maven central results and package index entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LongestSubstrBenchmark {
+    @Benchmark
+    public int allGroupsAgainstAllPackages() {
+        int result = 0;
+        for (String packageName : OpenhabPackages.IMPORTED_PACKAGES) {
+            for (String group : OpenhabPackages.MAVEN_GROUPS) {
+                result += DependencyResolver.longestSubstr(group, packageName);
+            }
+        }
+        return result;
+    }
+}
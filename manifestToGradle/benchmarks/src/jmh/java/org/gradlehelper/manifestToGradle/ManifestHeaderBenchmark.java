@@ -0,0 +1,32 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.gradlehelper.manifestToGradle.tools.ManifestHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Tokenizing an Import-Package header, like readManifestDependencies does for every bundle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManifestHeaderBenchmark {
+    private final String header = OpenhabPackages.importPackageHeader();
+
+    @Benchmark
+    public List<ManifestHeader.Clause> parseImportPackage() {
+        return ManifestHeader.parse(header);
+    }
+
+    @Benchmark
+    public List<String> parsePaths() {
+        return ManifestHeader.parsePaths(header);
+    }
+}
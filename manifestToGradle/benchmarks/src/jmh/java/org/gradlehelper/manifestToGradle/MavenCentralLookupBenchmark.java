@@ -0,0 +1,115 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradlehelper.manifestToGradle.tools.Dependency;
+import org.gradlehelper.manifestToGradle.tools.DependencyResolver;
+import org.gradlehelper.manifestToGradle.tools.ResolverRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Resolves packages that are unknown to the resolver rules with an empty cache against a local
+ * {@link MavenCentralStandIn}. Half of the packages are found via the artifact query, the other half needs both
+ * queries and is not resolved. Measures the throughput of the lookup executor for a given server latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MavenCentralLookupBenchmark {
+    private static final int PACKAGES = 64;
+
+    @Param({ "0", "20" })
+    public int latencyMillis;
+
+    @Param({ "1", "8" })
+    public int maxConcurrentLookups;
+
+    @Param({ "0", "0.05" })
+    public double errorRate;
+
+    private MavenCentralStandIn standIn;
+    private ResolverRules rules;
+    private String[] packages;
+    private Path cacheDir;
+    private DependencyResolver resolver;
+
+    @Setup
+    public void setup() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(getClass().getResource("/resolverRules.txt").openStream()))) {
+            rules = ResolverRules.parse(reader);
+        }
+
+        standIn = new MavenCentralStandIn(null, 42);
+        standIn.setLatency(latencyMillis);
+        standIn.setErrorRate(errorRate);
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < PACKAGES; ++i) {
+            String packageName = "org.example.standin" + i + ".api";
+            packages.add(packageName);
+            if (i % 2 == 0) {
+                standIn.addResponse("a:\"" + packageName + "\"",
+                        "{\"response\":{\"numFound\":1,\"start\":0,\"docs\":[{\"id\":\"org.example:" + packageName
+                                + ":1." + i + ".0\",\"g\":\"org.example\",\"a\":\"" + packageName + "\",\"v\":\"1."
+                                + i + ".0\",\"p\":\"jar\",\"timestamp\":1500000000000}]}}");
+            }
+        }
+        this.packages = packages.toArray(new String[0]);
+        standIn.start(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        standIn.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void createResolver() throws IOException {
+        cacheDir = Files.createTempDirectory("lookup-benchmark");
+        resolver = new DependencyResolver(cacheDir.resolve("dependency.cache"), rules, 0, true, true,
+                maxConcurrentLookups, 0);
+        resolver.setSearchUrl(standIn.getSearchUrl());
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteCache() throws IOException {
+        resolver.writeCache();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(cacheDir);
+    }
+
+    @Benchmark
+    public void resolveUnknownPackages(Blackhole blackhole) {
+        List<CompletableFuture<Dependency>> lookups = new ArrayList<>(PACKAGES);
+        for (String packageName : packages) {
+            lookups.add(resolver.resolveDependencyAsync(packageName));
+        }
+        for (CompletableFuture<Dependency> lookup : lookups) {
+            blackhole.consume(lookup.join());
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gradlehelper.manifestToGradle.tools.DependencyResolver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the maven central Solr search API, for offline benchmarks and regression tests of the
+ * dependency resolver. Point the resolver to {@link #getSearchUrl()}, or the converter to it with --search-url.
+ *
+ * Responses are looked up by the "q" query parameter, first in the responses added with
+ * {@link #addResponse(String, String)}, then in the responses directory. Unknown queries are answered with an empty
+ * result, or in recording mode forwarded to the upstream endpoint and stored in the responses directory.
+ *
+ * Every response is delayed by the configured latency. A configured fraction of the requests fails with HTTP 503.
+ */
+public class MavenCentralStandIn implements AutoCloseable {
+    private static final String EMPTY_RESPONSE = "{\"response\":{\"numFound\":0,\"start\":0,\"docs\":[]}}";
+
+    static {
+        // Headers and body are separate writes. With Nagle's algorithm every response waits for a delayed ACK,
+        // about 40ms, which would dominate the measured latency. Read once by the first created server.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Path responsesDir;
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failedRequests = new AtomicInteger();
+    private final Random random;
+    private long latencyMillis;
+    private double errorRate;
+    private String recordFrom;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param responsesDir A directory with recorded responses or null
+     * @param seed The seed of the error injection
+     */
+    public MavenCentralStandIn(Path responsesDir, long seed) {
+        this.responsesDir = responsesDir;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param latencyMillis The delay of every response in milliseconds
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param errorRate The fraction of requests, between 0 and 1, that are answered with HTTP 503
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Forward unknown queries to the given endpoint and store the responses in the responses directory.
+     *
+     * @param upstreamUrl The upstream search URL, for example {@link DependencyResolver#DEFAULT_SEARCH_URL}
+     */
+    public void recordFrom(String upstreamUrl) {
+        if (responsesDir == null) {
+            throw new IllegalStateException("Recording requires a responses directory");
+        }
+        this.recordFrom = upstreamUrl;
+    }
+
+    /**
+     * @param query The Solr query, for example a:"org.example"
+     * @param json The response body
+     */
+    public void addResponse(String query, String json) {
+        responses.put(query, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts the server on the loopback interface.
+     *
+     * @param port A port or 0 for any free port
+     * @throws IOException If the server could not be started
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/solrsearch/select", this::handle);
+        // Requests are delayed, each one needs its own thread
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "maven-central-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The search URL of the running server
+     */
+    public String getSearchUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/solrsearch/select";
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            boolean fail;
+            synchronized (random) {
+                fail = errorRate > 0 && random.nextDouble() < errorRate;
+            }
+            if (fail) {
+                failedRequests.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            String query = queryParameter(rawQuery == null ? "" : rawQuery, "q");
+            byte[] body = query == null ? null : lookup(query, rawQuery);
+            if (body == null) {
+                body = EMPTY_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] lookup(String query, String rawQuery) throws IOException {
+        byte[] body = responses.get(query);
+        if (body != null) {
+            return body;
+        }
+        Path responsesDir = this.responsesDir;
+        if (responsesDir == null) {
+            return null;
+        }
+        Path file = responsesDir.resolve(fileName(query));
+        if (Files.isRegularFile(file)) {
+            return Files.readAllBytes(file);
+        }
+        String recordFrom = this.recordFrom;
+        if (recordFrom == null) {
+            return null;
+        }
+        body = fetch(new URL(recordFrom + "?" + rawQuery));
+        if (body != null) {
+            Files.createDirectories(responsesDir);
+            Files.write(file, body);
+        }
+        return body;
+    }
+
+    private static byte[] fetch(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            if (connection.getResponseCode() != 200) {
+                // Failures are not recorded, the next request asks upstream again
+                return null;
+            }
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+            }
+            return content.toByteArray();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String queryParameter(String rawQuery, String name) throws IOException {
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(parameter.substring(separator + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The file name of the recorded response of a query, for example a_org.example_.json for a:"org.example"
+     */
+    static String fileName(String query) {
+        return query.replaceAll("[^A-Za-z0-9._-]", "_") + ".json";
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println(
+                    "Usage: MavenCentralStandIn responses-directory [port] [latency-ms] [error-rate] [--record]");
+            return;
+        }
+        MavenCentralStandIn standIn = new MavenCentralStandIn(Paths.get(args[0]), 42);
+        standIn.setLatency(args.length > 2 ? Long.parseLong(args[2]) : 0);
+        standIn.setErrorRate(args.length > 3 ? Double.parseDouble(args[3]) : 0);
+        if (args.length > 4 && "--record".equals(args[4])) {
+            standIn.recordFrom(DependencyResolver.DEFAULT_SEARCH_URL);
+        }
+        standIn.start(args.length > 1 ? Integer.parseInt(args[1]) : 8983);
+        System.out.println("Serving " + standIn.getSearchUrl());
+    }
+}
@@ -0,0 +1,59 @@
+package org.gradlehelper.manifestToGradle;
+
+/**
+ * Realistic inputs for the benchmarks, taken from typical openHAB 2 binding manifests.
+ */
+final class OpenhabPackages {
+    static final String[] IMPORTED_PACKAGES = { "org.eclipse.smarthome.config.core",
+            "org.eclipse.smarthome.config.discovery", "org.eclipse.smarthome.core.common",
+            "org.eclipse.smarthome.core.library.types", "org.eclipse.smarthome.core.thing",
+            "org.eclipse.smarthome.core.thing.binding", "org.eclipse.smarthome.core.thing.binding.builder",
+            "org.eclipse.smarthome.core.thing.type", "org.eclipse.smarthome.core.types",
+            "org.eclipse.smarthome.io.net.http", "org.eclipse.smarthome.io.transport.mqtt",
+            "org.openhab.binding.zwave", "org.openhab.binding.zwave.handler", "org.openhab.core.library.types",
+            "com.google.common.collect", "com.google.gson", "com.google.gson.annotations",
+            "org.apache.commons.lang.builder", "org.apache.commons.io", "org.apache.commons.exec",
+            "javax.jmdns", "javax.servlet.http", "javax.measure.quantity", "org.jupnp.model.meta",
+            "org.jupnp.registry", "org.osgi.framework", "org.osgi.service.component",
+            "org.osgi.service.http", "org.slf4j", "tec.uom.se.unit", "io.netty.handler.codec.mqtt",
+            "org.eclipse.jetty.client", "org.eclipse.jetty.client.api", "org.eclipse.jetty.http" };
+
+    static final String[] MAVEN_GROUPS = { "org.eclipse.smarthome.core", "org.eclipse.smarthome.io",
+            "org.openhab.binding", "com.google.guava", "com.google.code.gson", "commons-lang", "commons-io",
+            "org.apache.commons", "org.jmdns", "javax.servlet", "org.jupnp", "org.osgi", "org.slf4j",
+            "tec.uom", "io.netty", "org.eclipse.jetty" };
+
+    static final String[] VERSIONS = { "2.2.0", "2.2.0-SNAPSHOT", "0.9.0.201707121049", "1.7.25", "3.5.1",
+            "22.0", "2.8.2", "9.4.7.v20170914", "1.0-alpha-2", "4.1.16.Final", "2.6", "1.3.0", "3.0.1",
+            "1.1.0.RC2", "0.10.0-SNAPSHOT", "5.0.0.M4" };
+
+    /**
+     * @return An Import-Package header with version ranges, directives and continuation whitespace
+     */
+    static String importPackageHeader() {
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < IMPORTED_PACKAGES.length; ++i) {
+            if (i > 0) {
+                header.append(",\n ");
+            }
+            header.append(IMPORTED_PACKAGES[i]);
+            switch (i % 4) {
+                case 0:
+                    header.append(";version=\"[0.9.0,0.10.0)\"");
+                    break;
+                case 1:
+                    header.append(";version=\"1.7.0\";resolution:=optional");
+                    break;
+                case 2:
+                    header.append(";version=\"[2.0,3)\"");
+                    break;
+                default:
+                    break;
+            }
+        }
+        return header.toString();
+    }
+
+    private OpenhabPackages() {
+    }
+}
@@ -0,0 +1,88 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradlehelper.manifestToGradle.tools.DependencyResolver;
+import org.gradlehelper.manifestToGradle.tools.ResolverRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Resolving package names that are answered by the resolver rules and by the in-memory cache. Network lookups are
+ * disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResolverBenchmark {
+    private Path cacheDir;
+    private DependencyResolver resolver;
+    private String[] rulePackages;
+    private String[] cachedPackages;
+
+    @Setup
+    public void setup() throws IOException {
+        cacheDir = Files.createTempDirectory("resolver-benchmark");
+        ResolverRules rules;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(getClass().getResource("/resolverRules.txt").openStream()))) {
+            rules = ResolverRules.parse(reader);
+        }
+        resolver = new DependencyResolver(cacheDir.resolve("dependency.cache"), rules, 0, true, false, 1, 0);
+
+        List<String> rulePackages = new ArrayList<>();
+        List<String> cachedPackages = new ArrayList<>();
+        for (String packageName : OpenhabPackages.IMPORTED_PACKAGES) {
+            if (rules.match(packageName) != null) {
+                rulePackages.add(packageName);
+            } else {
+                // Guessed and added to the cache
+                resolver.resolveDependency(packageName);
+                cachedPackages.add(packageName);
+            }
+        }
+        this.rulePackages = rulePackages.toArray(new String[0]);
+        this.cachedPackages = cachedPackages.toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        resolver.writeCache();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(cacheDir);
+    }
+
+    @Benchmark
+    public void rules(Blackhole blackhole) {
+        for (String packageName : rulePackages) {
+            blackhole.consume(resolver.resolveDependency(packageName));
+        }
+    }
+
+    @Benchmark
+    public void cacheHit(Blackhole blackhole) {
+        for (String packageName : cachedPackages) {
+            blackhole.consume(resolver.resolveDependency(packageName));
+        }
+    }
+}
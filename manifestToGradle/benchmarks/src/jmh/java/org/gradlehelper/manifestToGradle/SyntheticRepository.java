@@ -0,0 +1,228 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates a synthetic openHAB style repository for end-to-end scale tests of the converter. The tree contains:
+ * <ul>
+ * <li>A root pom.xml and a parent pom.xml per bundle category</li>
+ * <li>Bundles with META-INF/MANIFEST.MF, Import-Package and Export-Package headers, pom.xml, sources and Eclipse
+ * project files. Bundles import packages of other bundles and of {@link OpenhabPackages}.</li>
+ * <li>"lib" directories with small jars for every fifth bundle</li>
+ * <li>".test" sibling projects for every third bundle. Test classes extend OSGiTest directly, indirectly via a base
+ * class, or are plain unit tests.</li>
+ * </ul>
+ *
+ * The generator is deterministic for a given seed. Usage: SyntheticRepository output-directory [bundles] [seed]
+ */
+public class SyntheticRepository {
+    private static final String[] CATEGORIES = { "binding", "io", "persistence", "transform" };
+
+    private final Path root;
+    private final int bundles;
+    private final Random random;
+
+    public SyntheticRepository(Path root, int bundles, long seed) {
+        this.root = root;
+        this.bundles = bundles;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return The bundle symbolic name of the given bundle number
+     */
+    static String bundleName(int bundle) {
+        return "org.openhab." + CATEGORIES[bundle % CATEGORIES.length] + ".synthetic" + bundle;
+    }
+
+    private Path bundleDir(int bundle) {
+        return root.resolve("addons").resolve(CATEGORIES[bundle % CATEGORIES.length]).resolve(bundleName(bundle));
+    }
+
+    /**
+     * Creates the repository. The output directory must not contain a repository yet.
+     *
+     * @throws IOException If a file could not be written
+     */
+    public void generate() throws IOException {
+        Files.createDirectories(root);
+        write(root.resolve("README.md"), "# Synthetic repository\n");
+        write(root.resolve("pom.xml"), pom(null, "org.openhab", "pom", "Synthetic root"));
+        for (String category : CATEGORIES) {
+            write(root.resolve("addons").resolve(category).resolve("pom.xml"),
+                    pom("<groupId>org.openhab</groupId><artifactId>pom</artifactId>", "org.openhab." + category,
+                            "pom", "openHAB " + category));
+        }
+        for (int bundle = 0; bundle < bundles; ++bundle) {
+            generateBundle(bundle);
+            if (bundle % 3 == 0) {
+                generateTestProject(bundle);
+            }
+        }
+    }
+
+    private void generateBundle(int bundle) throws IOException {
+        String name = bundleName(bundle);
+        Path dir = bundleDir(bundle);
+        String category = CATEGORIES[bundle % CATEGORIES.length];
+
+        List<String> imports = new ArrayList<>();
+        int externalImports = 5 + random.nextInt(15);
+        for (int i = 0; i < externalImports; ++i) {
+            String packageName = OpenhabPackages.IMPORTED_PACKAGES[random
+                    .nextInt(OpenhabPackages.IMPORTED_PACKAGES.length)];
+            switch (random.nextInt(3)) {
+                case 0:
+                    imports.add(packageName + ";version=\"[0.9.0,0.10.0)\"");
+                    break;
+                case 1:
+                    imports.add(packageName + ";resolution:=optional");
+                    break;
+                default:
+                    imports.add(packageName);
+                    break;
+            }
+        }
+        // Imports of packages exported by other bundles
+        if (bundle > 0) {
+            for (int i = random.nextInt(3); i > 0; --i) {
+                imports.add(bundleName(random.nextInt(bundle)) + ";version=\"[2.2.0,3.0.0)\"");
+            }
+        }
+        imports.add(name);
+
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("Manifest-Version: 1.0\n");
+        manifest.append("Bundle-ManifestVersion: 2\n");
+        manifest.append("Bundle-SymbolicName: ").append(name).append(";singleton:=true\n");
+        manifest.append("Bundle-Vendor: openHAB\n");
+        manifest.append("Bundle-Version: 2.2.0.qualifier\n");
+        if (bundle % 5 == 0) {
+            manifest.append("Bundle-ClassPath: .,\n lib/synthetic-lib-").append(bundle).append(".jar\n");
+        }
+        manifest.append("Export-Package: ").append(name).append(";version=\"2.2.0\",\n ").append(name)
+                .append(".handler;version=\"2.2.0\";uses:=\"").append(name).append("\"\n");
+        manifest.append("Import-Package: ").append(String.join(",\n ", imports)).append("\n\n");
+        write(dir.resolve("META-INF/MANIFEST.MF"), wrapManifest(manifest.toString()));
+
+        write(dir.resolve("pom.xml"), pom("<groupId>org.openhab." + category + "</groupId><artifactId>pom</artifactId>",
+                null, name, name + " synthetic bundle"));
+        write(dir.resolve(".project"), "<projectDescription><name>" + name + "</name></projectDescription>\n");
+        write(dir.resolve("build.properties"), "bin.includes = META-INF/,.\nsource.. = src/main/java/\n");
+
+        String packagePath = name.replace('.', '/');
+        String className = "Synthetic" + bundle + "Handler";
+        write(dir.resolve("src/main/java").resolve(packagePath).resolve("handler").resolve(className + ".java"),
+                "package " + name + ".handler;\n\nimport org.eclipse.smarthome.core.thing.Thing;\n\n"
+                        + "public class " + className + " {\n    public Thing getThing() {\n        return null;\n"
+                        + "    }\n}\n");
+
+        if (bundle % 5 == 0) {
+            writeJar(dir.resolve("lib/synthetic-lib-" + bundle + ".jar"), "com/example/lib" + bundle);
+        }
+    }
+
+    private void generateTestProject(int bundle) throws IOException {
+        String name = bundleName(bundle);
+        Path dir = bundleDir(bundle).resolveSibling(name + ".test");
+        String category = CATEGORIES[bundle % CATEGORIES.length];
+
+        write(dir.resolve("META-INF/MANIFEST.MF"),
+                "Manifest-Version: 1.0\nBundle-SymbolicName: " + name + ".test\nFragment-Host: " + name
+                        + "\nImport-Package: org.junit,\n org.hamcrest;version=\"[1.3,2)\",\n "
+                        + "org.eclipse.smarthome.test,\n org.eclipse.smarthome.test.java\n\n");
+        write(dir.resolve("pom.xml"), pom("<groupId>org.openhab." + category + "</groupId><artifactId>pom</artifactId>",
+                null, name + ".test", name + " tests"));
+        write(dir.resolve(".project"), "<projectDescription><name>" + name + ".test</name></projectDescription>\n");
+        write(dir.resolve("build.properties"), "bin.includes = META-INF/,.\n");
+
+        Path sources = dir.resolve("src/test/java").resolve(name.replace('.', '/'));
+        String testPackage = "package " + name + ";\n\n";
+        write(sources.resolve("AbstractSyntheticOSGiTest.java"), testPackage
+                + "import org.eclipse.smarthome.test.java.JavaOSGiTest;\n\n"
+                + "public abstract class AbstractSyntheticOSGiTest extends JavaOSGiTest {\n}\n");
+        write(sources.resolve("SyntheticDiscoveryTest.java"),
+                testPackage + "public class SyntheticDiscoveryTest extends AbstractSyntheticOSGiTest {\n}\n");
+        write(sources.resolve("SyntheticParserTest.java"), testPackage + "import org.junit.Test;\n\n"
+                + "public class SyntheticParserTest {\n    @Test\n    public void parse() {\n    }\n}\n");
+        write(dir.resolve("src/test/resources/test-data.json"), "{}\n");
+        if (bundle % 2 == 0) {
+            writeJar(dir.resolve("lib/synthetic-test-lib-" + bundle + ".jar"), "com/example/testlib" + bundle);
+        }
+    }
+
+    /**
+     * Manifest lines are limited to 72 bytes, longer lines are continued with a leading space.
+     */
+    private static String wrapManifest(String manifest) {
+        StringBuilder wrapped = new StringBuilder();
+        for (String line : manifest.split("\n", -1)) {
+            while (line.length() > 72) {
+                wrapped.append(line, 0, 72).append("\n ");
+                line = line.substring(72);
+            }
+            wrapped.append(line).append("\n");
+        }
+        return wrapped.substring(0, wrapped.length() - 1);
+    }
+
+    private static String pom(String parent, String groupId, String artifactId, String name) {
+        StringBuilder pom = new StringBuilder();
+        pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+        if (parent != null) {
+            pom.append("  <parent>").append(parent).append("<version>2.2.0-SNAPSHOT</version></parent>\n");
+        }
+        if (groupId != null) {
+            pom.append("  <groupId>").append(groupId).append("</groupId>\n");
+        }
+        pom.append("  <artifactId>").append(artifactId).append("</artifactId>\n");
+        pom.append("  <name>").append(name).append("</name>\n");
+        pom.append("  <packaging>").append(parent == null || groupId != null ? "pom" : "eclipse-plugin")
+                .append("</packaging>\n");
+        pom.append("</project>\n");
+        return pom.toString();
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeJar(Path file, String classPath) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.write("Manifest-Version: 1.0\n\n".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry(classPath + "/Library.class"));
+            zip.write(new byte[] { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe });
+            zip.closeEntry();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SyntheticRepository output-directory [bundles] [seed]");
+            return;
+        }
+        Path root = Paths.get(args[0]);
+        int bundles = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        long started = System.nanoTime();
+        new SyntheticRepository(root, bundles, seed).generate();
+        System.out.printf("Generated %d bundles in %s within %d ms\n", bundles, root,
+                (System.nanoTime() - started) / 1000000);
+    }
+}
@@ -0,0 +1,80 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.Dependency;
+import org.gradlehelper.manifestToGradle.tools.GradleFileEmitter;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Sorting and rendering the dependencies of a bundle into dependencies.gradle content, into a reused buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteDependenciesBenchmark {
+    private static final String[] TYPES = { "api", "implementation", "compileOnly", "testImplementation" };
+
+    private Path projectDir;
+    private ManifestToGradle converter;
+    private final Map<Dependency, String> dependencies = new HashMap<>();
+    private final GradleFileEmitter emitter = new GradleFileEmitter();
+
+    @Setup
+    public void setup() throws IOException {
+        projectDir = Files.createTempDirectory("write-dependencies-benchmark");
+        CliArguments arguments = new CliArguments();
+        arguments.inputDir = projectDir;
+        arguments.useMavenCentral = false;
+        converter = new ManifestToGradle();
+        converter.init(arguments, RepositoryIndex.scan(projectDir));
+
+        for (int i = 0; i < OpenhabPackages.IMPORTED_PACKAGES.length; ++i) {
+            String packageName = OpenhabPackages.IMPORTED_PACKAGES[i];
+            String group = OpenhabPackages.MAVEN_GROUPS[i % OpenhabPackages.MAVEN_GROUPS.length];
+            Dependency dependency = Dependency.of(packageName, group,
+                    OpenhabPackages.VERSIONS[i % OpenhabPackages.VERSIONS.length]);
+            if (i % 7 == 0) {
+                dependency = dependency.withTransitiveDependencies(
+                        Collections.singletonList(Dependency.of("commons-exec", "org.apache.commons", "+")));
+            }
+            dependencies.put(dependency, TYPES[i % TYPES.length]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        converter.finish();
+        try (Stream<Path> files = Files.walk(projectDir)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer render() {
+        emitter.reset();
+        emitter.startFile(projectDir.resolve("dependencies.gradle"));
+        converter.writeDependencies(emitter, dependencies, projectDir);
+        return emitter.getContent(0);
+    }
+}
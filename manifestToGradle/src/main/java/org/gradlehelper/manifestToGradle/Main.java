@@ -3,6 +3,8 @@ package org.gradlehelper.manifestToGradle;
 import java.io.IOException;
 
 import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
+import org.gradlehelper.manifestToGradle.tools.RunMetrics;
 
 import picocli.CommandLine;
 
@@ -24,11 +26,39 @@ public class Main {
 
         System.out.println("Processing " + arguments.inputDir);
 
-        new RemoveEclipseFiles().start(arguments);
-        new TestProjectMove().start(arguments);
-        new ManifestToGradle().start(arguments);
-        new CopyRootProjectFiles().start(arguments);
-        new AppendReadme().start(arguments);
-        new TestProjectDelete().start(arguments);
+        RunMetrics metrics = new RunMetrics();
+
+        // Walk the repository only once. All stages work on this index.
+        RepositoryIndex index = metrics.measure("scan", () -> RepositoryIndex.scan(arguments.inputDir));
+        System.out.printf("Indexed %d files: %d manifests, %d test projects\n", index.getVisitedFiles(),
+                index.getManifestFiles().size(), index.getTestProjectDirs().size());
+        metrics.add("index.filesVisited", index.getVisitedFiles());
+        metrics.add("index.manifests", index.getManifestFiles().size());
+        metrics.add("index.testProjects", index.getTestProjectDirs().size());
+        metrics.add("index.eclipseFiles", index.getEclipseFiles().size());
+
+        metrics.time("removeEclipseFiles", () -> new RemoveEclipseFiles().start(arguments, index));
+        metrics.time("testProjectMove", () -> new TestProjectMove().start(arguments, index));
+        // The test projects are deleted in the background while the other stages run
+        TestProjectDelete testProjectDelete = new TestProjectDelete();
+        metrics.time("testProjectDelete", () -> testProjectDelete.start(arguments, index));
+        ManifestToGradle converter = new ManifestToGradle();
+        converter.setMetrics(metrics);
+        metrics.time("convert", () -> converter.start(arguments, index));
+        metrics.time("copyRootProjectFiles", () -> new CopyRootProjectFiles().start(arguments));
+        metrics.time("appendReadme", () -> new AppendReadme().start(arguments));
+        if (!arguments.watch) {
+            // The watch mode doesn't need to wait, the test projects are already out of the way
+            metrics.time("testProjectDeleteBackground", testProjectDelete::awaitBackgroundDeletion);
+        }
+
+        if (arguments.metricsOut != null) {
+            metrics.write(arguments.metricsOut);
+            System.out.println("Metrics written to " + arguments.metricsOut);
+        }
+
+        if (arguments.watch) {
+            new WatchMode().start(arguments, index, converter);
+        }
     }
 }
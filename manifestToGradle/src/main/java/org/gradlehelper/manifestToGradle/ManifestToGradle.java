@@ -20,41 +20,85 @@ package org.gradlehelper.manifestToGradle;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.gradlehelper.manifestToGradle.tools.ApiSurface;
 import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.ComparableVersion;
+import org.gradlehelper.manifestToGradle.tools.ConversionState;
 import org.gradlehelper.manifestToGradle.tools.DepWithGradleType;
 import org.gradlehelper.manifestToGradle.tools.Dependency;
+import org.gradlehelper.manifestToGradle.tools.DependencyMinimizer;
 import org.gradlehelper.manifestToGradle.tools.DependencyResolver;
+import org.gradlehelper.manifestToGradle.tools.ExportIndex;
+import org.gradlehelper.manifestToGradle.tools.GradleFileEmitter;
+import org.gradlehelper.manifestToGradle.tools.ManifestHeader;
+import org.gradlehelper.manifestToGradle.tools.OutputWriter;
+import org.gradlehelper.manifestToGradle.tools.PackageIndex;
+import org.gradlehelper.manifestToGradle.tools.PomGraph;
+import org.gradlehelper.manifestToGradle.tools.ProjectDependency;
+import org.gradlehelper.manifestToGradle.tools.ProjectGraph;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
+import org.gradlehelper.manifestToGradle.tools.ResolverRules;
+import org.gradlehelper.manifestToGradle.tools.RunMetrics;
+import org.gradlehelper.manifestToGradle.tools.VersionRange;
 
 /*
- * Reads manifest files and creates gradle build files out of them
+ * Reads manifest files and creates gradle build files out of them. Bundles are independent of each other and can be
+ * converted in parallel, see CliArguments.jobs.
  */
 public class ManifestToGradle {
     private Set<String> filterDependecies = Collections.emptySet();
-    private int processedFiles = 0;
+    private final AtomicInteger processedFiles = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
     private Map<Dependency, String> fixedDependencies;
     private DependencyResolver groupResolver;
+    private RepositoryIndex index;
+    private Path inputDir;
+    private ExportIndex exportIndex;
+    private ProjectGraph projectGraph;
+    private boolean pinVersions;
+    private int jobs = 1;
+    private @Nullable ConversionState conversionState;
+    private @Nullable PomGraph pomGraph;
+    private @Nullable DependencyMinimizer minimizer;
+    private OutputWriter outputWriter = new OutputWriter();
+    // Bundles are converted in parallel, every thread renders into its own buffer
+    private final ThreadLocal<GradleFileEmitter> emitters = ThreadLocal.withInitial(GradleFileEmitter::new);
+    private byte[] buildGradle = new byte[0];
+    private byte[] groovySupportGradle = new byte[0];
+    private RunMetrics metrics = new RunMetrics();
 
     // We define an order of gradle dependency types ('compile', etc).
     // The reasoning is, if a dependency is declared as 'testCompile', so used
@@ -74,14 +118,15 @@ public class ManifestToGradle {
         gradleDepTypeOrder.put("testRuntimeOnly", 11);
     }
 
-    private void writeManifestEntryIfExisting(PrintWriter gradleOutput, Attributes attributes, String attribKey) {
+    private void writeManifestEntryIfExisting(GradleFileEmitter gradleOutput, Attributes attributes,
+            String attribKey) {
         String value = attributes.getValue(attribKey);
         if (value != null) {
             gradleOutput.append(",\n\t\t\"").append(attribKey).append("\" : \"").append(value).append("\"");
         }
     }
 
-    private void writeBundleMetadata(PrintWriter gradleOutput, Manifest manifest) {
+    private void writeBundleMetadata(GradleFileEmitter gradleOutput, Manifest manifest) {
         Attributes attributes = manifest.getMainAttributes();
         gradleOutput
                 .append("jar {\n\tmanifest {\n\t\tattributes(\"Bundle-RequiredExecutionEnvironment\" : \"JavaSE-1.8\"");
@@ -91,13 +136,105 @@ public class ManifestToGradle {
         gradleOutput.append(")\n\t}\n}\n");
     }
 
+    /**
+     * Converts a bundle. In incremental mode the bundle is skipped if its inputs did not change since the last
+     * successful conversion.
+     *
+     * @param manifestFile The bundle manifest file
+     */
+    private void convertBundle(Path manifestFile) {
+        ConversionState state = conversionState;
+        if (state == null) {
+            writeManifest(manifestFile);
+            return;
+        }
+        Path projectDir = manifestFile.getParent().getParent();
+        byte[] hash;
+        try {
+            hash = hashBundleInputs(state, projectDir);
+        } catch (IOException e) {
+            System.err.println("Failed to hash inputs of " + projectDir.getFileName() + ": " + e.getMessage());
+            writeManifest(manifestFile);
+            return;
+        }
+        if (state.isUnchanged(projectDir, hash) && Files.exists(projectDir.resolve("dependencies.gradle"))) {
+            skippedFiles.incrementAndGet();
+            return;
+        }
+        if (writeManifest(manifestFile)) {
+            state.converted(projectDir, hash);
+        }
+    }
+
+    /**
+     * Hashes all inputs of a bundle: Both manifests, the pom.xml, the sources of the exported packages, the lib and
+     * libTests listings and the groovy source directories.
+     */
+    private byte[] hashBundleInputs(ConversionState state, Path projectDir) throws IOException {
+        Path projectTestDir = projectDir.getParent().resolve(projectDir.getFileName().toString() + ".test");
+        ConversionState.Hasher hasher = state.newBundleHasher();
+        hasher.addFile(projectDir.resolve("META-INF/MANIFEST.MF"));
+        // The test project might already be deleted, its manifest is kept by the index
+        byte[] testManifest = index.readTestManifest(projectTestDir);
+        if (testManifest != null) {
+            hasher.add(testManifest);
+        } else {
+            hasher.add((String) null);
+        }
+        hasher.addFile(projectDir.resolve("pom.xml"));
+        // The API surface decides between api and implementation dependencies
+        Set<String> exports = readExports(projectDir.resolve("META-INF/MANIFEST.MF"));
+        for (Path source : ApiSurface.findSources(projectDir, exports)) {
+            hasher.add(projectDir.relativize(source).toString()).add(String.valueOf(Files.size(source)))
+                    .add(String.valueOf(Files.getLastModifiedTime(source).toMillis()));
+        }
+        hasher.add("");
+        for (String libDir : new String[] { "lib", "libTests" }) {
+            for (Path file : index.getLibraryFiles(projectDir.resolve(libDir))) {
+                hasher.add(libDir + "/" + file.getFileName()).add(String.valueOf(Files.size(file)));
+            }
+            hasher.add("");
+        }
+        hasher.add(String.valueOf(Files.exists(projectDir.resolve("src/main/groovy"))));
+        hasher.add(String.valueOf(Files.exists(projectDir.resolve("src/test/groovy"))));
+        return hasher.finish();
+    }
+
+    /**
+     * Hashes all inputs that are shared by all bundles: Resource files, the resolver rules and options that change
+     * the output.
+     */
+    private byte[] hashSharedInputs(CliArguments arguments) throws IOException {
+        ConversionState.Hasher hasher = new ConversionState.Hasher();
+        for (String resource : new String[] { "/resolverRules.txt", "/fixedDependencies.txt",
+                "/filterDependencies.txt", "/project/build.gradle", "/project/groovySupport.gradle" }) {
+            try (InputStream in = getClass().getResource(resource).openStream()) {
+                hasher.add(in);
+            }
+        }
+        if (arguments.rulesFile != null) {
+            hasher.addFile(arguments.rulesFile);
+        }
+        // A bundle depends on the bundles that export its imports, unless the dependency closes a cycle
+        exportIndex.addTo(hasher);
+        projectGraph.addTo(hasher);
+        hasher.add(String.valueOf(pomGraph != null));
+        hasher.add(String.valueOf(arguments.minimizeDependencies));
+        hasher.add(String.valueOf(arguments.pinVersions)).add(String.valueOf(arguments.mavenCoordinateGuess))
+                .add(String.valueOf(arguments.useMavenCentral));
+        return hasher.finish();
+    }
+
     @SuppressWarnings("null")
-    private void writeManifest(Path manifestFile) {
+    private boolean writeManifest(Path manifestFile) {
         Path projectDir = manifestFile.getParent().getParent();
         Path projectTestDir = projectDir.getParent().resolve(projectDir.getFileName().toString() + ".test");
-        Path testManifestFile = projectTestDir.resolve("META-INF/MANIFEST.MF");
 
         Path pomFile = projectDir.resolve("pom.xml");
+        if (!index.hasPom(projectDir)) {
+            System.err.println("Failed to open pom file: " + projectDir.getFileName().toString());
+            return false;
+        }
         @NonNull
         Model model;
         try (FileReader reader = new FileReader(pomFile.toFile())) {
@@ -106,222 +243,591 @@ public class ManifestToGradle {
             model.setPomFile(pomFile.toFile());
         } catch (Exception ex) {
             System.err.println("Failed to open pom file: " + projectDir.getFileName().toString());
-            return;
+            return false;
         }
 
         // Read dependencies from main manifest file and also from .test project manifest file
-        Map<Dependency, String> dependencies = new HashMap<>();
+        BundleDependencies bundleDependencies = new BundleDependencies();
         // Add additional dependencies, declared in resource file
-        dependencies.putAll(fixedDependencies);
+        fixedDependencies.forEach(bundleDependencies::put);
 
         // Add groovy as dependency if it's a groovy project
         if (Files.exists(projectDir.resolve("src/test/groovy"))) {
-            dependencies.put(new Dependency("groovy-all", "org.codehaus.groovy", "+"), "testCompile");
+            bundleDependencies.put(Dependency.of("groovy-all", "org.codehaus.groovy", "+"), "testCompile");
         }
         if (Files.exists(projectDir.resolve("src/main/groovy"))) {
-            dependencies.put(new Dependency("groovy-all", "org.codehaus.groovy", "+"), "compile");
+            bundleDependencies.put(Dependency.of("groovy-all", "org.codehaus.groovy", "+"), "compile");
         }
         // Add dependencies of pom.xml as compileOnly
         for (org.apache.maven.model.Dependency dependency : model.getDependencies()) {
-            dependencies.put(new Dependency(dependency.getArtifactId(), dependency.getGroupId(), "+"), "compileOnly");
+            bundleDependencies.put(Dependency.of(dependency.getArtifactId(), dependency.getGroupId(), "+"),
+                    "compileOnly");
         }
 
         // Read MANIFEST.MF of current "project" and of "project.test" if existing. Add found dependencies.
         Manifest manifest;
         try {
             manifest = new Manifest(new BufferedInputStream(new FileInputStream(manifestFile.toString())));
+            Set<String> exports = readManifestExports(manifest);
+            ApiSurface apiSurface = ApiSurface.scan(projectDir, exports);
+            metrics.add("converter.apiSources", apiSurface.getScannedSources());
+            if (!apiSurface.isComplete()) {
+                metrics.increment("converter.apiIncomplete");
+                System.err.println("\tAPI of " + projectDir.getFileName() + " not fully scanned, all imports are api"
+                        + " dependencies: " + String.join("; ", apiSurface.getProblems()));
+            }
             Set<String> filter = new HashSet<>();
-            filter.addAll(readManifestExports(manifest));
+            filter.addAll(exports);
             filter.addAll(filterDependecies);
-            readManifestDependencies(manifest, dependencies, filter, false);
-            if (Files.exists(testManifestFile)) {
+            String projectPath = ExportIndex.projectPath(inputDir, projectDir);
+            readManifestDependencies(manifest, projectPath, bundleDependencies, filter, apiSurface);
+            byte[] testManifest = index.readTestManifest(projectTestDir);
+            if (testManifest != null) {
                 System.out.println("Test dependencies detected: " + projectDir.getFileName());
-                Manifest tManifest = new Manifest(
-                        new BufferedInputStream(new FileInputStream(testManifestFile.toString())));
+                Manifest tManifest = new Manifest(new ByteArrayInputStream(testManifest));
                 filter.addAll(readManifestExports(tManifest));
-                readManifestDependencies(tManifest, dependencies, filter, true);
+                readManifestDependencies(tManifest, projectPath, bundleDependencies, filter, null);
             }
         } catch (IOException e) {
             System.err.println("Failed to process " + manifestFile + ": " + e.getMessage());
-            return;
+            return false;
         }
 
-        ++processedFiles;
-
-        // Write details.gradle
-        Path outputPath = projectDir.resolve("settings.gradle");
-        try (PrintWriter gradleOutput = new PrintWriter(outputPath.toString())) {
-            gradleOutput.append("rootProject.name='").append(model.getArtifactId()).println("'");
-        } catch (IOException e) {
-            System.err.println("Failed to write gradle details file: " + outputPath.toString());
+        Map<Dependency, String> dependencies = bundleDependencies.types;
+
+        // Replace the transitive dependencies by those of the POMs of the local maven repository
+        PomGraph pomGraph = this.pomGraph;
+        if (pomGraph != null) {
+            Map<Dependency, String> withTransitive = new HashMap<>();
+            dependencies.forEach((dependency, type) -> withTransitive.put(
+                    dependency instanceof ProjectDependency ? dependency
+                            : pomGraph.withTransitiveDependencies(dependency),
+                    type));
+            dependencies = withTransitive;
         }
 
-        outputPath = projectDir.resolve("manifest.gradle");
-        try (PrintWriter gradleOutput = new PrintWriter(outputPath.toString())) {
-            if (model.getGroupId() != null) {
-                gradleOutput.append("group='").append(model.getGroupId()).println("'");
-            } else if (model.getParent().getGroupId() != null) {
-                gradleOutput.append("group='").append(model.getParent().getGroupId()).println("'");
-            }
-            if (model.getDescription() != null) {
-                gradleOutput.append("description='").append(model.getDescription()).println("'");
-            } else if (model.getName() != null) {
-                gradleOutput.append("description='").append(model.getName()).println("'");
-            }
-            writeBundleMetadata(gradleOutput, manifest);
-        } catch (IOException e) {
-            System.err.println("Failed to write " + outputPath.toString() + ": " + e.getMessage());
+        // Drop dependencies that are provided transitively by another dependency
+        DependencyMinimizer minimizer = this.minimizer;
+        if (minimizer != null) {
+            int size = dependencies.size();
+            dependencies = minimizer.minimize(dependencies);
+            metrics.add("converter.impliedDependencies", size - dependencies.size());
         }
 
-        outputPath = projectDir.resolve("dependencies.gradle");
-        try (PrintWriter gradleOutput = new PrintWriter(outputPath.toString())) {
-            writeDependencies(gradleOutput, dependencies, projectDir);
-        } catch (IOException e) {
-            System.err.println("Failed to write " + outputPath.toString() + ": " + e.getMessage());
-        }
+        processedFiles.incrementAndGet();
 
-        try (InputStream in = getClass().getResource("/project/build.gradle").openStream()) {
-            Files.copy(in, projectDir.resolve("build.gradle"), StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            System.err.println("Failed to write build.gradle: " + e.getMessage());
+        // All files are rendered into the buffer of this thread first and only written if they changed.
+        GradleFileEmitter gradleOutput = emitters.get();
+        gradleOutput.reset();
+        gradleOutput.startFile(projectDir.resolve("settings.gradle"));
+        gradleOutput.append("rootProject.name='").append(model.getArtifactId()).append("'\n");
+
+        gradleOutput.startFile(projectDir.resolve("manifest.gradle"));
+        if (model.getGroupId() != null) {
+            gradleOutput.append("group='").append(model.getGroupId()).append("'\n");
+        } else if (model.getParent().getGroupId() != null) {
+            gradleOutput.append("group='").append(model.getParent().getGroupId()).append("'\n");
+        }
+        if (model.getDescription() != null) {
+            gradleOutput.append("description='").append(model.getDescription()).append("'\n");
+        } else if (model.getName() != null) {
+            gradleOutput.append("description='").append(model.getName()).append("'\n");
         }
+        writeBundleMetadata(gradleOutput, manifest);
+
+        gradleOutput.startFile(projectDir.resolve("dependencies.gradle"));
+        writeDependencies(gradleOutput, dependencies, projectDir);
+
+        gradleOutput.startFile(projectDir.resolve("build.gradle")).append(buildGradle);
 
         // Special case: groovy code
         if (Files.exists(projectDir.resolve("src/main/groovy"))
                 || Files.exists(projectDir.resolve("src/test/groovy"))) {
             System.out.println("\tGroovy project detected: " + projectDir.getFileName());
-            try (InputStream in = getClass().getResource("/project/groovySupport.gradle").openStream()) {
-                Files.copy(in, projectDir.resolve("groovySupport.gradle"), StandardCopyOption.REPLACE_EXISTING);
+            gradleOutput.startFile(projectDir.resolve("groovySupport.gradle")).append(groovySupportGradle);
+        }
+
+        for (int i = 0; i < gradleOutput.getFileCount(); ++i) {
+            Path outputPath = gradleOutput.getFile(i);
+            try {
+                outputWriter.write(outputPath, gradleOutput.getContent(i));
             } catch (IOException e) {
-                System.err.println("Failed to write groovySupport.gradle: " + e.getMessage());
+                System.err.println("Failed to write " + outputPath.toString() + ": " + e.getMessage());
             }
         }
-
+        return true;
     }
 
-    private static Set<String> readManifestExports(Manifest manifest) {
-        String exportPackagesString = manifest.getMainAttributes().getValue("Export-Package");
-        if (exportPackagesString == null) {
+    private static Set<String> readExports(Path manifestFile) throws IOException {
+        if (!Files.exists(manifestFile)) {
             return Collections.emptySet();
-        } else {
-            return Stream.of(exportPackagesString.split(",")).collect(Collectors.toSet());
+        }
+        try (InputStream in = Files.newInputStream(manifestFile)) {
+            return readManifestExports(new Manifest(in));
         }
     }
 
-    private void readManifestDependencies(Manifest manifest, Map<Dependency, String> dependencies, Set<String> filter,
-            boolean isTest) {
-        String importPackagesString = manifest.getMainAttributes().getValue("Import-Package");
+    private static List<String> readImports(Path manifestFile) throws IOException {
+        if (!Files.exists(manifestFile)) {
+            return Collections.emptyList();
+        }
+        try (InputStream in = Files.newInputStream(manifestFile)) {
+            return readImports(in);
+        }
+    }
+
+    private static List<String> readImports(InputStream in) throws IOException {
+        return ManifestHeader.parsePaths(new Manifest(in).getMainAttributes().getValue("Import-Package"));
+    }
+
+    private static Set<String> readManifestExports(Manifest manifest) {
+        return new HashSet<>(ManifestHeader.parsePaths(manifest.getMainAttributes().getValue("Export-Package")));
+    }
+
+    /**
+     * Adds the dependencies of the imported packages. Imports that are part of the API surface of the bundle are
+     * "api" dependencies, all others, and those of the test manifest, are "implementation" dependencies.
+     *
+     * Packages exported by another bundle are project dependencies, unless the dependency would close a cycle of
+     * projects. Those packages are resolved like any other package.
+     *
+     * @param projectPath The gradle project path of the bundle
+     * @param apiSurface The API surface of the bundle or null for the test manifest
+     */
+    private void readManifestDependencies(Manifest manifest, String projectPath, BundleDependencies dependencies,
+            Set<String> filter, @Nullable ApiSurface apiSurface) {
+        List<ManifestHeader.Clause> importPackages = ManifestHeader
+                .parse(manifest.getMainAttributes().getValue("Import-Package"));
 
         // Imported packages from manifest
-        if (importPackagesString != null) {
-            importPackagesString = importPackagesString.replaceAll("version=\"(.*?)\"", "");
-            String[] arr = importPackagesString.split(",");
-            for (String artifactName : arr) {
-                artifactName = artifactName.split(";")[0];
-                if (filter.contains(artifactName)) {
-                    continue;
+        if (!importPackages.isEmpty()) {
+            // Start all lookups first, so that maven central requests of this bundle are performed concurrently
+            Map<String, CompletableFuture<@Nullable Dependency>> lookups = new LinkedHashMap<>();
+            Map<String, String> versionRanges = new HashMap<>();
+            for (ManifestHeader.Clause clause : importPackages) {
+                for (String artifactName : clause.getPaths()) {
+                    if (filter.contains(artifactName) || lookups.containsKey(artifactName)) {
+                        continue;
+                    }
+                    // Exported by another bundle of the repository: No lookup needed
+                    ProjectDependency project = exportIndex.lookup(artifactName);
+                    if (project != null && !projectGraph.isBackEdge(projectPath, project.getPath())) {
+                        dependencies.add(project, dependencyType(apiSurface, artifactName));
+                        metrics.increment("converter.projectDependencies");
+                        continue;
+                    }
+                    lookups.put(artifactName, groupResolver.resolveDependencyAsync(artifactName));
+                    String versionRange = clause.getAttribute("version");
+                    if (versionRange != null) {
+                        versionRanges.put(artifactName, versionRange);
+                    }
                 }
-                Dependency dependency = groupResolver.resolveDependency(artifactName);
+            }
+            for (Map.Entry<String, CompletableFuture<@Nullable Dependency>> lookup : lookups.entrySet()) {
+                String artifactName = lookup.getKey();
+                Dependency dependency = lookup.getValue().join();
                 if (dependency == null) {
                     // Dependency resolution decided, that this dependency is not required
                     continue;
                 }
-                // We never define a version in the dependencies.gradle. The version will be restricted
-                // by the allowed_dependencies.txt and the multi-project build script.
-                dependency.version = "+";
-                // The dependency might already be in the set, fetch the existing entry if any. Replace
-                // it if the existing one is lower within the order, defined by gradleDepTypeOrder.
-                String type = artifactName.contains("smarthome") || artifactName.contains("openhab") ? "api"
-                        : "implementation";
-                if (gradleDepTypeOrder.get(type) < gradleDepTypeOrder.getOrDefault(dependencies.get(dependency), 20)) {
-                    // Add only if not in the filter list.
-                    if (!filter.contains(dependency.name)) {
-                        dependencies.put(dependency, type);
-                    }
+                // The version is pinned to the highest version within the imported version range that is known to
+                // contain the package. The range is a package version range, it is compared to artifact versions.
+                // Without a range or a known matching version, the version will be restricted by the
+                // allowed_dependencies.txt and the multi-project build script.
+                // Dependencies are immutable, the resolver cache entry is not changed.
+                String version = pinVersion(artifactName, dependency, versionRanges.get(artifactName));
+                dependency = dependency.withVersion(version);
+                // Add only if not in the filter list.
+                if (filter.contains(dependency.getName())) {
+                    continue;
                 }
+                dependencies.add(dependency, dependencyType(apiSurface, artifactName));
+            }
+        }
+    }
+
+    private String dependencyType(@Nullable ApiSurface apiSurface, String artifactName) {
+        if (apiSurface != null && apiSurface.isApi(artifactName)) {
+            metrics.increment("converter.apiDependencies");
+            return "api";
+        }
+        return "implementation";
+    }
+
+    private String pinVersion(String artifactName, Dependency dependency, @Nullable String versionRange) {
+        if (!pinVersions || versionRange == null) {
+            return "+";
+        }
+        try {
+            String version = groupResolver.pinVersion(artifactName, dependency, VersionRange.parse(versionRange));
+            return version != null ? version : "+";
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignore version range of " + artifactName + ": " + e.getMessage());
+            return "+";
+        }
+    }
+
+    /**
+     * The dependencies of a bundle and their gradle configurations, indexed by group and name.
+     */
+    private static class BundleDependencies {
+        final Map<Dependency, String> types = new HashMap<>();
+        // "group:name" -> the latest entry of types for the artifact
+        private final Map<String, Dependency> byArtifact = new HashMap<>();
+
+        void put(Dependency dependency, String type) {
+            types.put(dependency, type);
+            byArtifact.put(dependency.getGroup() + ":" + dependency.getName(), dependency);
+        }
+
+        /**
+         * The dependency might already be in the set, possibly with another version. Fetch the existing entry if any.
+         * Replace its type if the existing one is lower within the order, defined by gradleDepTypeOrder. Of two
+         * versions of the same artifact the higher pinned version is kept.
+         */
+        void add(Dependency dependency, String type) {
+            Dependency existing = byArtifact.get(dependency.getGroup() + ":" + dependency.getName());
+            if (existing == null) {
+                put(dependency, type);
+                return;
+            }
+            String existingType = types.get(existing);
+            if (gradleDepTypeOrder.get(type) >= gradleDepTypeOrder.getOrDefault(existingType, 20)) {
+                type = existingType;
+            }
+            if (isHigherVersion(dependency.getVersion(), existing.getVersion())) {
+                types.remove(existing);
+                put(dependency, type);
+            } else {
+                types.put(existing, type);
             }
         }
     }
 
-    private void writeDependencies(PrintWriter gradleOutput, Map<Dependency, String> dependencies, Path projectDir)
-            throws IOException {
+    private static boolean isHigherVersion(String version, String other) {
+        if ("+".equals(version) || version.equals(other)) {
+            return false;
+        }
+        return "+".equals(other) || new ComparableVersion(version).compareTo(new ComparableVersion(other)) > 0;
+    }
 
+    void writeDependencies(GradleFileEmitter gradleOutput, Map<Dependency, String> dependencies, Path projectDir) {
         gradleOutput.append("dependencies {\n");
 
         // File dependencies
-        Path externalLibDir = projectDir.resolve("lib");
-        if (Files.isDirectory(externalLibDir)) {
-            Files.walk(externalLibDir).filter(Files::isRegularFile).forEach(file -> {
-                gradleOutput.append("\tcompile name: '")
-                        .append(file.getFileName().toString().toLowerCase().replace(".jar", "")).append("'\n");
-            });
-        }
-        externalLibDir = projectDir.resolve("libTests");
-        if (Files.isDirectory(externalLibDir)) {
-            Files.walk(externalLibDir).filter(Files::isRegularFile).forEach(file -> {
-                gradleOutput.append("\ttestCompile name: '")
-                        .append(file.getFileName().toString().toLowerCase().replace(".jar", "")).append("'\n");
-            });
-        }
-
-        dependencies.entrySet().stream()
-                .sorted((a, b) -> a.getValue().compareToIgnoreCase(b.getValue()) * 100
-                        + a.getKey().group.compareToIgnoreCase(b.getKey().group) * 10
-                        + a.getKey().name.compareToIgnoreCase(b.getKey().name) * 1)
-                .forEach(depEntry -> writeDependency(gradleOutput, depEntry.getKey(), depEntry.getValue(), 1));
+        for (Path file : index.getLibraryFiles(projectDir.resolve("lib"))) {
+            gradleOutput.append("\tcompile name: '")
+                    .append(file.getFileName().toString().toLowerCase().replace(".jar", "")).append("'\n");
+        }
+        for (Path file : index.getLibraryFiles(projectDir.resolve("libTests"))) {
+            gradleOutput.append("\ttestCompile name: '")
+                    .append(file.getFileName().toString().toLowerCase().replace(".jar", "")).append("'\n");
+        }
 
-        gradleOutput.append("}\n");
+        gradleOutput.appendDependencies(dependencies);
 
+        gradleOutput.append("}\n");
     }
 
-    private void writeDependency(PrintWriter gradleOutput, Dependency dep, String type, int level) {
-        if (dep.hasTransitiveDependencies()) {
-            for (int i = 0; i < level; ++i) {
-                gradleOutput.append('\t');
+    /**
+     * Compiles the built-in resolver rules and the rules of the given file.
+     *
+     * @param rulesFile A rules file or null
+     * @return Returns the resolver rules
+     * @throws IOException If a rules file could not be read
+     */
+    private ResolverRules loadResolverRules(@Nullable Path rulesFile) throws IOException {
+        try (BufferedReader builtIn = new BufferedReader(
+                new InputStreamReader(getClass().getResource("/resolverRules.txt").openStream()))) {
+            if (rulesFile == null) {
+                return ResolverRules.parse(builtIn);
             }
-            gradleOutput.append(type).append(" module(\"").append(dep.toString()).append("\") {\n");
-            for (Dependency trans : dep.getTransitiveDeps()) {
-                writeDependency(gradleOutput, trans, "implementation", level + 1);
+            try (BufferedReader custom = Files.newBufferedReader(rulesFile)) {
+                return ResolverRules.parse(builtIn, custom);
             }
-            for (int i = 0; i < level; ++i) {
-                gradleOutput.append('\t');
-            }
-            gradleOutput.append("}\n");
-        } else {
-            for (int i = 0; i < level; ++i) {
-                gradleOutput.append('\t');
-            }
-            gradleOutput.append(type).append(" '").append(dep.toString()).append("'\n");
         }
     }
 
-    public int start(CliArguments arguments) throws IOException {
-        groupResolver = new DependencyResolver(arguments.inputDir.resolve(arguments.cacheFile), arguments.maxAge,
-                arguments.mavenCoordinateGuess, arguments.useMavenCentral);
-        processedFiles = 0;
+    /**
+     * Collect counters of the converter and the dependency resolver in the given metrics. Must be called before
+     * {@link #init(CliArguments, RepositoryIndex)}.
+     *
+     * @param metrics The run metrics
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int start(CliArguments arguments, RepositoryIndex index) throws IOException {
+        init(arguments, index);
+        int processed = convert(index.getManifestFiles());
+        finish();
+        return processed;
+    }
+
+    /**
+     * Prepares the conversion: Creates the dependency resolver and loads all resources. The resolver and its cache
+     * are kept in memory until {@link #finish()} is called, so that repeated conversions, see {@link WatchMode},
+     * don't need to resolve packages again.
+     *
+     * @param arguments The command line arguments
+     * @param index The repository index
+     * @throws IOException If the resolver cache, the package index or a resource could not be read
+     */
+    public void init(CliArguments arguments, RepositoryIndex index) throws IOException {
+        this.index = index;
+        this.inputDir = arguments.inputDir;
+        this.pinVersions = arguments.pinVersions;
+        this.jobs = arguments.jobs > 0 ? arguments.jobs : Runtime.getRuntime().availableProcessors();
+        groupResolver = new DependencyResolver(arguments.inputDir.resolve(arguments.cacheFile),
+                loadResolverRules(arguments.rulesFile), arguments.maxAge, arguments.mavenCoordinateGuess,
+                arguments.useMavenCentral, arguments.maxConcurrentLookups,
+                TimeUnit.DAYS.toMillis(arguments.unresolvedCacheTtl));
+        groupResolver.setIgnoreUnresolvedCache(arguments.ignoreUnresolvedCache);
+        groupResolver.setMetrics(metrics);
+        groupResolver.setSearchUrl(arguments.searchUrl);
+        Path packageIndexFile = arguments.inputDir.resolve(arguments.packageIndexFile);
+        if (arguments.localMavenRepository != null) {
+            int packages = PackageIndex.update(arguments.localMavenRepository, packageIndexFile,
+                    arguments.rebuildPackageIndex);
+            if (packages >= 0) {
+                System.out.printf("Indexed %d packages of %s\n", packages, arguments.localMavenRepository);
+            } else {
+                System.out.println("Package index of " + arguments.localMavenRepository + " is up to date");
+            }
+        }
+        if (Files.exists(packageIndexFile)) {
+            groupResolver.setPackageIndex(PackageIndex.open(packageIndexFile));
+        }
+        pomGraph = null;
+        if (arguments.transitiveDependencies) {
+            Path pomRepository = pomRepository(arguments);
+            if (Files.isDirectory(pomRepository)) {
+                pomGraph = new PomGraph(pomRepository, metrics);
+            } else {
+                System.err.println("Transitive dependencies require a maven repository, " + pomRepository
+                        + " does not exist, ignored");
+            }
+        }
+        minimizer = arguments.minimizeDependencies ? new DependencyMinimizer(gradleDepTypeOrder) : null;
+        // Packages exported by bundles of this repository
+        List<Path> bundleManifests = bundleManifests();
+        exportIndex = ExportIndex.build(arguments.inputDir, bundleManifests);
+        System.out.printf("Indexed %d packages exported by %d bundles\n", exportIndex.size(), bundleManifests.size());
+        projectGraph = ProjectGraph.build(exportIndex, readBundleImports(arguments.inputDir, bundleManifests));
+        metrics.add("converter.projectBackEdges", projectGraph.getBackEdgeCount());
+        conversionState = arguments.incremental
+                ? new ConversionState(arguments.inputDir.resolve(arguments.stateFile), arguments.inputDir,
+                        hashSharedInputs(arguments))
+                : null;
 
         System.out.println("Start manifest converter");
 
         fixedDependencies = new BufferedReader(
                 new InputStreamReader(getClass().getResource("/fixedDependencies.txt").openStream())).lines()
-                        .map(line -> new DepWithGradleType(line)).collect(Collectors.toMap(d -> d, d -> d.gradletype));
+                        .map(line -> new DepWithGradleType(line))
+                        .collect(Collectors.toMap(d -> d.dependency, d -> d.gradletype));
 
         filterDependecies = new BufferedReader(
                 new InputStreamReader(getClass().getResource("/filterDependencies.txt").openStream())).lines()
                         .collect(Collectors.toSet());
 
-        Files.find(arguments.inputDir, Integer.MAX_VALUE,
-                (filePath, fileAttr) -> fileAttr.isRegularFile()
-                        && "MANIFEST.MF".equals(filePath.getFileName().toString())
-                        && "META-INF".equals(filePath.getParent().getFileName().toString()))
-                .forEach(this::writeManifest);
+        buildGradle = readResource("/project/build.gradle");
+        groovySupportGradle = readResource("/project/groovySupport.gradle");
+    }
+
+    /**
+     * @return The repository to read POMs from: The given one, the local maven repository or ~/.m2/repository
+     */
+    private static Path pomRepository(CliArguments arguments) {
+        if (arguments.pomRepository != null) {
+            return arguments.pomRepository;
+        }
+        if (arguments.localMavenRepository != null) {
+            return arguments.localMavenRepository;
+        }
+        return Paths.get(System.getProperty("user.home"), ".m2", "repository");
+    }
+
+    /**
+     * @return The manifests of the bundles of the gradle build. Test projects are not part of the build.
+     */
+    private List<Path> bundleManifests() {
+        Set<Path> testProjectDirs = new HashSet<>(index.getTestProjectDirs());
+        return index.getManifestFiles().stream()
+                .filter(manifestFile -> index.hasPom(manifestFile.getParent().getParent())
+                        && !testProjectDirs.contains(manifestFile.getParent().getParent()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the exports of all bundles again, after manifests changed in watch mode, and updates the hash of the
+     * shared inputs. The repository index must be refreshed before.
+     *
+     * @param arguments The command line arguments
+     * @param changedProjects The bundles with changed manifests
+     * @return Returns the other bundles that import a package of a changed bundle or a package that is exported by
+     *         another bundle now, and those whose dependencies closing a cycle changed. They need to be converted
+     *         again.
+     * @throws IOException If the shared inputs could not be read
+     */
+    public Set<Path> refreshExports(CliArguments arguments, Collection<Path> changedProjects) throws IOException {
+        ExportIndex previous = exportIndex;
+        ProjectGraph previousGraph = projectGraph;
+        List<Path> bundleManifests = bundleManifests();
+        exportIndex = ExportIndex.build(arguments.inputDir, bundleManifests);
+        Map<String, List<String>> imports = readBundleImports(arguments.inputDir, bundleManifests);
+        projectGraph = ProjectGraph.build(exportIndex, imports);
+        Set<String> packages = exportIndex.changedPackages(previous);
+        for (Path projectDir : changedProjects) {
+            ProjectDependency project = new ProjectDependency(ExportIndex.projectPath(arguments.inputDir, projectDir));
+            packages.addAll(previous.exportsOf(project));
+            packages.addAll(exportIndex.exportsOf(project));
+        }
+        updateSharedInputs(arguments);
+
+        Set<Path> dependents = new LinkedHashSet<>();
+        for (Path manifestFile : bundleManifests) {
+            Path projectDir = manifestFile.getParent().getParent();
+            String projectPath = ExportIndex.projectPath(arguments.inputDir, projectDir);
+            if (!changedProjects.contains(projectDir) && (!Collections.disjoint(packages, imports.get(projectPath))
+                    || !previousGraph.getBackEdges(projectPath).equals(projectGraph.getBackEdges(projectPath)))) {
+                dependents.add(projectDir);
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Reads the imported packages of the given bundles and of their test projects, in parallel.
+     *
+     * @return The imported packages by project path
+     */
+    private Map<String, List<String>> readBundleImports(Path root, List<Path> bundleManifests) {
+        return bundleManifests.parallelStream().collect(Collectors.toMap(
+                manifestFile -> ExportIndex.projectPath(root, manifestFile.getParent().getParent()),
+                this::readBundleImports));
+    }
+
+    private List<String> readBundleImports(Path manifestFile) {
+        Path projectDir = manifestFile.getParent().getParent();
+        List<String> imports = new ArrayList<>();
+        try {
+            imports.addAll(readImports(manifestFile));
+            byte[] testManifest = index.readTestManifest(projectDir.resolveSibling(projectDir.getFileName() + ".test"));
+            if (testManifest != null) {
+                imports.addAll(readImports(new ByteArrayInputStream(testManifest)));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read imports of " + projectDir.getFileName() + ": " + e.getMessage());
+        }
+        return imports;
+    }
+
+    /**
+     * Reads the rules file again, after it changed in watch mode, and updates the hash of the shared inputs. All
+     * bundles need to be converted again.
+     *
+     * @param arguments The command line arguments
+     * @throws IOException If the rules file could not be read
+     * @throws IllegalArgumentException If the rules file contains an invalid rule. The previous rules are kept.
+     */
+    public void reloadRules(CliArguments arguments) throws IOException {
+        groupResolver.setRules(loadResolverRules(arguments.rulesFile));
+        updateSharedInputs(arguments);
+    }
 
-        System.out.printf("Finished. Processed %d\n", processedFiles);
+    private void updateSharedInputs(CliArguments arguments) throws IOException {
+        ConversionState state = conversionState;
+        if (state != null) {
+            state.setSharedInputs(hashSharedInputs(arguments));
+        }
+    }
+
+    private byte[] readResource(String resource) throws IOException {
+        try (InputStream in = getClass().getResource(resource).openStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toByteArray();
+        }
+    }
+
+    /**
+     * Converts the given bundles. {@link #init(CliArguments, RepositoryIndex)} must have been called before.
+     *
+     * @param manifestFiles The bundle manifest files
+     * @return Returns the amount of converted bundles
+     * @throws IOException If the conversion was interrupted
+     */
+    public int convert(Collection<Path> manifestFiles) throws IOException {
+        processedFiles.set(0);
+        skippedFiles.set(0);
+        outputWriter = new OutputWriter();
+
+        if (jobs == 1 || manifestFiles.size() == 1) {
+            manifestFiles.forEach(this::convertBundle);
+        } else {
+            convertInParallel(manifestFiles, jobs);
+        }
+
+        System.out.printf("Finished. Processed %d\n", processedFiles.get());
+        System.out.printf("Changed %d generated files, %d files were up to date\n", outputWriter.getChangedFiles(),
+                outputWriter.getUnchangedFiles());
+        if (conversionState != null) {
+            System.out.printf("Skipped %d unchanged\n", skippedFiles.get());
+        }
+        metrics.add("converter.bundlesConverted", processedFiles.get());
+        metrics.add("converter.bundlesSkipped", skippedFiles.get());
+        metrics.add("output.filesChanged", outputWriter.getChangedFiles());
+        metrics.add("output.filesUnchanged", outputWriter.getUnchangedFiles());
+        metrics.add("output.bytesWritten", outputWriter.getBytesWritten());
+        return processedFiles.get();
+    }
+
+    /**
+     * Persists the incremental state and the resolver cache.
+     *
+     * @throws IOException If a file could not be written
+     */
+    public void finish() throws IOException {
+        ConversionState state = conversionState;
+        if (state != null) {
+            state.write();
+        }
         groupResolver.writeCache();
-        return processedFiles;
+    }
+
+    /**
+     * Converts the given bundles with a work-stealing pool of the given size.
+     *
+     * @param manifestFiles The bundle manifest files
+     * @param parallelism The amount of worker threads
+     * @throws IOException If the conversion was interrupted
+     */
+    private void convertInParallel(Collection<Path> manifestFiles, int parallelism) throws IOException {
+        System.out.printf("Convert with %d workers\n", parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // A parallel stream, started from within a pool, uses that pool instead of the common pool
+            pool.submit(() -> manifestFiles.parallelStream().forEach(this::convertBundle)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Conversion interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
     }
 
     public int getProcessedFiles() {
-        return processedFiles;
+        return processedFiles.get();
     }
 }
@@ -1,9 +1,10 @@
 package org.gradlehelper.manifestToGradle;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
 
 /**
  * Removes all eclipse project files, those are generated by gradle
@@ -11,12 +12,13 @@ import org.gradlehelper.manifestToGradle.tools.CliArguments;
  * @author David Graeff
  */
 public class RemoveEclipseFiles {
-    public void start(CliArguments arguments) throws IOException {
+    public void start(CliArguments arguments, RepositoryIndex index) throws IOException {
         System.out.println("Start remove eclipse project files");
-        Files.find(arguments.inputDir, Integer.MAX_VALUE,
-                (filePath, fileAttr) -> fileAttr.isRegularFile() && ".project".equals(filePath.getFileName().toString())
-                        || "build.properties".equals(filePath.getFileName().toString()))
-                .forEach(f -> f.toFile().delete());
+        for (Path file : index.getEclipseFiles()) {
+            if (file.toFile().delete()) {
+                index.fileDeleted(file);
+            }
+        }
         System.out.println("Finish remove eclipse project files");
     }
 }
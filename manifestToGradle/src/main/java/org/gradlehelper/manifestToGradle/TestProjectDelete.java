@@ -1,20 +1,38 @@
 package org.gradlehelper.manifestToGradle;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
 
 /**
  * Deletes test project directories
  *
+ * With CliArguments.fastDelete the directories are renamed into a trash directory within the input directory
+ * instead, which is atomic on the same file system. The trash directory is deleted by a parallel fork-join task in
+ * the background, see {@link #awaitBackgroundDeletion()}.
+ *
+ * The stage runs before the conversion, so that the background deletion overlaps with it. The manifests of the test
+ * projects are kept by the repository index for the converter.
+ *
  * @author David Graeff
  */
 public class TestProjectDelete {
+    private ForkJoinPool pool;
+    private DeleteTree backgroundDeletion;
+
     private void deleteTestDirectory(Path testProject) {
         try {
             System.out.println("\tRemove test project directory " + testProject.getFileName().toString());
@@ -36,15 +54,110 @@ public class TestProjectDelete {
         }
     }
 
-    public void start(CliArguments arguments) throws IOException {
+    /**
+     * Deletes a directory tree. Files are deleted by the task of their directory, subdirectories are deleted by
+     * forked tasks.
+     */
+    private static class DeleteTree extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+
+        DeleteTree(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTree> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        subdirs.add(new DeleteTree(entry));
+                    } else {
+                        delete(entry);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("\t\tFailed " + e.getMessage());
+            }
+            invokeAll(subdirs);
+            delete(dir);
+        }
+
+        private static void delete(Path path) {
+            try {
+                Files.delete(path);
+            } catch (IOException e) {
+                System.err.println("\t\tFailed " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Moves the test projects into the trash directory and starts the background deletion. Test projects that
+     * cannot be moved are deleted immediately. A trash directory left behind by an earlier run is deleted as well.
+     */
+    private void moveToTrash(Path inputDir, List<Path> testProjects) {
+        Path trashDir = inputDir.resolve(RepositoryIndex.TRASH_DIR);
+        try {
+            Files.createDirectories(trashDir);
+        } catch (IOException e) {
+            System.err.println("\t\tFailed " + e.getMessage());
+            testProjects.forEach(this::deleteTestDirectory);
+            return;
+        }
+
+        int moved = 0;
+        for (Path testProject : testProjects) {
+            Path target = trashDir.resolve(testProject.getFileName());
+            for (int i = 1; Files.exists(target, LinkOption.NOFOLLOW_LINKS); ++i) {
+                target = trashDir.resolve(testProject.getFileName() + "-" + i);
+            }
+            try {
+                Files.move(testProject, target, StandardCopyOption.ATOMIC_MOVE);
+                ++moved;
+            } catch (IOException e) {
+                // For example a trash directory on another file system
+                deleteTestDirectory(testProject);
+            }
+        }
+        System.out.printf("\tMoved %d test projects to %s, deleting in the background\n", moved,
+                RepositoryIndex.TRASH_DIR);
+
+        pool = new ForkJoinPool();
+        backgroundDeletion = new DeleteTree(trashDir);
+        pool.execute(backgroundDeletion);
+    }
+
+    /**
+     * Waits until the background deletion of the trash directory finished. Returns immediately if no background
+     * deletion was started.
+     */
+    public void awaitBackgroundDeletion() {
+        if (backgroundDeletion == null) {
+            return;
+        }
+        backgroundDeletion.join();
+        pool.shutdown();
+        backgroundDeletion = null;
+        System.out.println("Finish background deletion of test projects");
+    }
+
+    public void start(CliArguments arguments, RepositoryIndex index) throws IOException {
         System.out.println("Start test project removal");
-        Files.find(arguments.inputDir, Integer.MAX_VALUE, (filePath, fileAttr) -> {
-            if (!fileAttr.isDirectory()) {
-                return false;
+        for (Path testProject : index.getTestProjectDirs()) {
+            try {
+                index.testProjectDeleted(testProject);
+            } catch (IOException e) {
+                System.err.println("\tFailed to read the manifest of " + testProject.getFileName() + ": "
+                        + e.getMessage());
             }
-            return (filePath.toString().endsWith(".test") && filePath
-                    .resolveSibling(filePath.getFileName().toString().replace(".test", "")).toFile().exists());
-        }).forEach(this::deleteTestDirectory);
+        }
+        if (arguments.fastDelete) {
+            moveToTrash(arguments.inputDir, index.getTestProjectDirs());
+        } else {
+            index.getTestProjectDirs().forEach(this::deleteTestDirectory);
+        }
         System.out.println("Finish test project removal");
     }
 }
@@ -1,15 +1,19 @@
 package org.gradlehelper.manifestToGradle;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
+import org.gradlehelper.manifestToGradle.tools.TestClassifier;
 
 /**
  * Moves test project files from own artifact into host project artifact. The following tasks are performed:
@@ -20,24 +24,21 @@ import org.gradlehelper.manifestToGradle.tools.CliArguments;
  * 1) some.namespace/src/test keeps the unit tests
  * 2) some.namespace/src/integration-test is created and populated with all classes that inherit from "OSGiTest"
  *
+ * All test sources are classified in parallel before anything is moved, see {@link TestClassifier}.
+ *
  * @author David Graeff
  */
 public class TestProjectMove {
+    private RepositoryIndex index;
+    private TestClassifier classifier;
+
     private void moveFromOwnBundleToHostBundle(Path testProject) {
         Path hostProjectDir = testProject.resolveSibling(testProject.getFileName().toString().replace(".test", ""));
         Path testsDirectory = testProject.resolve("src/test");
         if (Files.exists(hostProjectDir.resolve("src")) && Files.exists(testsDirectory)) {
-            Path hostProjectTestDir = hostProjectDir.resolve("src/test");
             System.out.println("\tMove project " + testProject.getFileName() + "/src/test/* -> "
                     + hostProjectDir.getFileName() + "/src/test");
-            try (Stream<Path> testFiles = Files.find(testsDirectory, Integer.MAX_VALUE,
-                    (filePath, fileAttr) -> fileAttr.isRegularFile()
-                            && (filePath.toString().endsWith(".java") || filePath.toString().endsWith(".groovy")))) {
-                testFiles.forEach(testFilepath -> moveTestFile(hostProjectDir, testsDirectory, testFilepath));
-            } catch (IOException e) {
-                System.err.println("\t\tFailed: From " + testsDirectory.toString() + " to "
-                        + hostProjectTestDir.toString() + "; " + e.getMessage());
-            }
+            moveTestFiles(hostProjectDir, testsDirectory, index.getTestSources(testProject));
         }
 
         Path libDirectory = testProject.resolve("lib");
@@ -46,6 +47,7 @@ public class TestProjectMove {
             try {
                 System.out.println("\tMove project libs of " + testProject.getFileName().toString());
                 Files.move(libDirectory, hostProjectTestLibDir);
+                index.libraryDirectoryMoved(libDirectory, hostProjectTestLibDir);
             } catch (IOException e) {
                 System.err.println(
                         "\t\tFailed: From " + libDirectory.toString() + " to " + hostProjectTestLibDir.toString());
@@ -70,41 +72,54 @@ public class TestProjectMove {
      * namespace.test/src/test/java|groovy/lala/bla/abc.java to
      * namespace/src/test/java|groovy/lala/bla/abc.java.
      *
-     * If the file contains "OSGiTest" it is moved to src/integration-test/...
+     * Integration tests are moved to src/integration-test/... instead. The destination directories are created
+     * once per directory before the files are moved.
      *
      * @param destinationProjectDir
      * @param sourceTestDir
-     * @param testFile
+     * @param testFiles
      */
-    private void moveTestFile(Path destinationProjectDir, Path sourceTestDir, Path testFile) {
-
-        try (BufferedReader bufferedReader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(testFile.toFile())))) {
-            Path destFile = destinationProjectDir;
-            if (bufferedReader.lines().anyMatch(line -> line.contains("OSGiTest"))) {
-                destFile = destFile.resolve("src/integration-test");
-            } else {
-                destFile = destFile.resolve("src/test");
-
+    private void moveTestFiles(Path destinationProjectDir, Path sourceTestDir, List<Path> testFiles) {
+        Set<Path> integrationTests = classifier.findIntegrationTests(testFiles);
+        Map<Path, Path> moves = new LinkedHashMap<>();
+        Set<Path> destDirs = new LinkedHashSet<>();
+        for (Path testFile : testFiles) {
+            // Unreadable files are reported by the classifier and stay where they are
+            if (!classifier.isScanned(testFile)) {
+                continue;
             }
-            destFile = destFile.resolve(sourceTestDir.relativize(testFile));
+            Path destFile = destinationProjectDir
+                    .resolve(integrationTests.contains(testFile) ? "src/integration-test" : "src/test")
+                    .resolve(sourceTestDir.relativize(testFile));
+            moves.put(testFile, destFile);
+            destDirs.add(destFile.getParent());
+        }
 
-            Files.createDirectories(destFile.getParent());
-            Files.move(testFile, destFile, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            System.err.println("\t\tFailed " + e.getMessage());
+        for (Path destDir : destDirs) {
+            try {
+                Files.createDirectories(destDir);
+            } catch (IOException e) {
+                System.err.println("\t\tFailed " + e.getMessage());
+            }
+        }
+        for (Map.Entry<Path, Path> move : moves.entrySet()) {
+            try {
+                Files.move(move.getKey(), move.getValue(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("\t\tFailed " + e.getMessage());
+            }
         }
     }
 
-    public void start(CliArguments arguments) throws IOException {
+    public void start(CliArguments arguments, RepositoryIndex index) throws IOException {
         System.out.println("Start test project move");
-        Files.find(arguments.inputDir, Integer.MAX_VALUE, (filePath, fileAttr) -> {
-            if (!fileAttr.isDirectory()) {
-                return false;
-            }
-            return (filePath.toString().endsWith(".test") && filePath
-                    .resolveSibling(filePath.getFileName().toString().replace(".test", "")).toFile().exists());
-        }).forEach(this::moveFromOwnBundleToHostBundle);
+        this.index = index;
+        List<Path> testSources = new ArrayList<>();
+        for (Path testProject : index.getTestProjectDirs()) {
+            testSources.addAll(index.getTestSources(testProject));
+        }
+        this.classifier = TestClassifier.scan(testSources);
+        index.getTestProjectDirs().forEach(this::moveFromOwnBundleToHostBundle);
         System.out.println("Finish test project move");
     }
 }
@@ -0,0 +1,199 @@
+package org.gradlehelper.manifestToGradle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.gradlehelper.manifestToGradle.tools.CliArguments;
+import org.gradlehelper.manifestToGradle.tools.RepositoryIndex;
+
+/**
+ * Watches the manifests, pom.xml files and library directories of all bundles and converts changed bundles again.
+ * The converter, and with it the dependency resolver cache, stays in memory. Bursts of changes are collected until
+ * no further change arrives within the debounce time.
+ *
+ * If a manifest changes, the exports of all bundles are read again and the bundles importing packages of the changed
+ * bundle are converted as well. If the rules file changes, the rules are reloaded and all bundles are converted.
+ *
+ * Bundles that are created after the start of the watch mode are not picked up. Java sources are not watched: An
+ * edit of an exported class that changes the api and implementation classification of an import only shows up with
+ * the next conversion of the bundle.
+ *
+ * A failing conversion, for example because of an error rule or a manifest that is saved halfway through an edit, is
+ * reported and the watch mode continues. The bundles are converted again with their next change.
+ */
+public class WatchMode {
+    private final Map<WatchKey, Path> projectDirs = new HashMap<>();
+    private WatchService watchService;
+    private @Nullable Path rulesFile;
+    // Changes of the current burst, besides the changed projects
+    private final Set<Path> changedManifests = new LinkedHashSet<>();
+    private boolean rulesChanged;
+
+    private void register(Path dir, Path projectDir) throws IOException {
+        if (Files.isDirectory(dir)) {
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            projectDirs.put(key, projectDir);
+        }
+    }
+
+    private void registerProject(Path projectDir) throws IOException {
+        register(projectDir, projectDir);
+        register(projectDir.resolve("META-INF"), projectDir);
+        register(projectDir.resolve("lib"), projectDir);
+        register(projectDir.resolve("libTests"), projectDir);
+    }
+
+    /**
+     * Collects the events of the given key. Only changes of converter inputs mark a project as changed. The
+     * generated files within the project directory are ignored.
+     *
+     * @return Returns false if all events were lost and every bundle needs to be converted
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> changedProjects) throws IOException {
+        Path projectDir = projectDirs.get(key);
+        Path dir = (Path) key.watchable();
+        boolean complete = true;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                complete = false;
+                continue;
+            }
+            String name = event.context().toString();
+            if (dir.resolve(name).toAbsolutePath().normalize().equals(rulesFile)) {
+                rulesChanged = true;
+            }
+            if (projectDir == null) {
+                continue;
+            }
+            if (dir.equals(projectDir)) {
+                if ("pom.xml".equals(name)) {
+                    changedProjects.add(projectDir);
+                } else if ("META-INF".equals(name) || "lib".equals(name) || "libTests".equals(name)) {
+                    // A newly created directory needs to be watched as well
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        register(dir.resolve(name), projectDir);
+                    }
+                    if ("META-INF".equals(name)) {
+                        changedManifests.add(projectDir);
+                    }
+                    changedProjects.add(projectDir);
+                }
+            } else if (!"META-INF".equals(dir.getFileName().toString())) {
+                changedProjects.add(projectDir);
+            } else if ("MANIFEST.MF".equals(name)) {
+                changedManifests.add(projectDir);
+                changedProjects.add(projectDir);
+            }
+        }
+        if (!key.reset()) {
+            projectDirs.remove(key);
+        }
+        return complete;
+    }
+
+    public void start(CliArguments arguments, RepositoryIndex index, ManifestToGradle converter) throws IOException {
+        List<Path> bundles = new ArrayList<>();
+        for (Path manifestFile : index.getManifestFiles()) {
+            // Test projects are deleted by an earlier stage
+            if (Files.exists(manifestFile)) {
+                bundles.add(manifestFile.getParent().getParent());
+            }
+        }
+
+        try (WatchService watchService = arguments.inputDir.getFileSystem().newWatchService()) {
+            this.watchService = watchService;
+            for (Path projectDir : bundles) {
+                registerProject(projectDir);
+            }
+            if (arguments.rulesFile != null) {
+                Path rulesFile = arguments.rulesFile.toAbsolutePath().normalize();
+                this.rulesFile = rulesFile;
+                // Not mapped to a project. If the directory is a bundle directory, the key and its mapping are kept.
+                rulesFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+            System.out.printf("Watching %d bundles for changes\n", bundles.size());
+
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changedProjects = new LinkedHashSet<>();
+                changedManifests.clear();
+                rulesChanged = false;
+                boolean complete = true;
+                // Debounce: Wait until no further change arrives
+                while (key != null) {
+                    complete &= collectChanges(key, changedProjects);
+                    key = watchService.poll(arguments.watchDebounce, TimeUnit.MILLISECONDS);
+                }
+                if (!complete) {
+                    System.out.println("Too many changes, convert all bundles");
+                    changedProjects.addAll(bundles);
+                    changedManifests.addAll(bundles);
+                }
+                if (rulesChanged) {
+                    try {
+                        converter.reloadRules(arguments);
+                        System.out.println("Rules file changed, convert all bundles");
+                        changedProjects.addAll(bundles);
+                    } catch (IOException | IllegalArgumentException e) {
+                        System.err.println("Failed to reload " + arguments.rulesFile + ": " + e.getMessage());
+                    }
+                }
+                if (changedProjects.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    for (Path projectDir : changedProjects) {
+                        index.refreshProject(projectDir);
+                    }
+                    Set<Path> dependents = new LinkedHashSet<>();
+                    if (!changedManifests.isEmpty()) {
+                        dependents.addAll(converter.refreshExports(arguments, changedManifests));
+                        dependents.removeAll(changedProjects);
+                    }
+
+                    List<Path> manifestFiles = new ArrayList<>();
+                    for (Path projectDir : changedProjects) {
+                        if (index.hasManifest(projectDir)) {
+                            System.out.println("Changed: " + arguments.inputDir.relativize(projectDir));
+                            manifestFiles.add(projectDir.resolve("META-INF/MANIFEST.MF"));
+                        }
+                    }
+                    for (Path projectDir : dependents) {
+                        if (index.hasManifest(projectDir)) {
+                            System.out.println("Dependent: " + arguments.inputDir.relativize(projectDir));
+                            manifestFiles.add(projectDir.resolve("META-INF/MANIFEST.MF"));
+                        }
+                    }
+                    long started = System.nanoTime();
+                    converter.convert(manifestFiles);
+                    converter.finish();
+                    System.out.printf("Converted in %d ms\n",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                } catch (IOException | RuntimeException e) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    System.err.println("Conversion failed, still watching: " + cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Watch mode stopped");
+        }
+    }
+}
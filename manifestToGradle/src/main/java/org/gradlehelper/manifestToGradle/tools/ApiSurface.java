@@ -0,0 +1,407 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The packages referenced by the public signatures of the exported packages of a bundle. An imported package is
+ * only part of the API of a bundle, and needs the gradle "api" configuration, if types of it appear in these
+ * signatures. All other imports are "implementation" dependencies, downstream projects are then not recompiled if
+ * they change.
+ *
+ * The java sources of the exported packages are scanned. Public signatures are the declarations of public types
+ * and their public and protected members: Type parameters, superclasses and interfaces, annotations, field types,
+ * return types, parameter types and thrown exceptions. Method bodies and field initializers are skipped. Type
+ * names are resolved to packages by the single type imports and by qualified names, wildcard imports are
+ * conservatively assumed to be used by every public signature.
+ *
+ * If a bundle exports packages without sources, for example a bundle of compiled libraries, or if sources could not
+ * be read, all imports are assumed to be API. The scan does not report this itself, see {@link #getProblems()}.
+ */
+public class ApiSurface {
+    private static final String[] SOURCE_ROOTS = { "src/main/java", "src" };
+    private static final Pattern IMPORT = Pattern
+            .compile("\\bimport\\s+(static\\s+)?([\\w$]+(?:\\s*\\.\\s*[\\w$]+)*)(\\s*\\.\\s*\\*)?\\s*;");
+
+    private final Set<String> packages = new HashSet<>();
+    private final List<String> problems = new ArrayList<>();
+    private int scannedSources;
+
+    private ApiSurface() {
+    }
+
+    /**
+     * Scans the sources of the given exported packages.
+     *
+     * @param projectDir A bundle directory
+     * @param exportedPackages The packages exported by the bundle
+     * @return Returns the API surface of the bundle
+     */
+    public static ApiSurface scan(Path projectDir, Collection<String> exportedPackages) {
+        ApiSurface surface = new ApiSurface();
+        for (String exportedPackage : exportedPackages) {
+            List<Path> sources;
+            try {
+                sources = findSources(projectDir, exportedPackage);
+            } catch (IOException e) {
+                surface.problems.add("Failed to list the sources of " + exportedPackage + ": " + e.getMessage());
+                continue;
+            }
+            if (sources == null) {
+                surface.problems.add("No sources of the exported package " + exportedPackage);
+                continue;
+            }
+            for (Path source : sources) {
+                try {
+                    surface.packages.addAll(
+                            referencedPackages(new String(Files.readAllBytes(source), StandardCharsets.UTF_8)));
+                    ++surface.scannedSources;
+                } catch (IOException e) {
+                    surface.problems.add("Failed to read " + source + ": " + e.getMessage());
+                }
+            }
+        }
+        return surface;
+    }
+
+    /**
+     * @param projectDir A bundle directory
+     * @param exportedPackages The packages exported by the bundle
+     * @return The java sources of the exported packages, in a stable order
+     * @throws IOException If a package directory could not be listed
+     */
+    public static List<Path> findSources(Path projectDir, Collection<String> exportedPackages) throws IOException {
+        List<Path> allSources = new ArrayList<>();
+        for (String exportedPackage : exportedPackages) {
+            List<Path> sources = findSources(projectDir, exportedPackage);
+            if (sources != null) {
+                allSources.addAll(sources);
+            }
+        }
+        return allSources;
+    }
+
+    /**
+     * @return The sources of the package in the first source root containing the package directory, or null
+     */
+    private static @Nullable List<Path> findSources(Path projectDir, String packageName) throws IOException {
+        String packagePath = packageName.replace('.', '/');
+        for (String sourceRoot : SOURCE_ROOTS) {
+            Path packageDir = projectDir.resolve(sourceRoot).resolve(packagePath);
+            if (!Files.isDirectory(packageDir)) {
+                continue;
+            }
+            List<Path> sources = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(packageDir, "*.java")) {
+                for (Path file : files) {
+                    sources.add(file);
+                }
+            }
+            sources.sort(null);
+            return sources;
+        }
+        return null;
+    }
+
+    /**
+     * @param packageName An imported package
+     * @return Returns true if the package is referenced by a public signature or if the bundle could not be fully
+     *         scanned
+     */
+    public boolean isApi(String packageName) {
+        return !isComplete() || packages.contains(packageName);
+    }
+
+    /**
+     * @return Returns true if the sources of all exported packages were scanned
+     */
+    public boolean isComplete() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * @return Why the scan is incomplete: Exported packages without sources and sources that could not be read
+     */
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * @return The amount of scanned source files
+     */
+    public int getScannedSources() {
+        return scannedSources;
+    }
+
+    /**
+     * A type body. Members of an exposed type body are part of the API if they are public or protected, or if the
+     * type is an interface or annotation and they are not private.
+     */
+    private static class TypeBody {
+        final boolean exposed;
+        final boolean isInterface;
+
+        TypeBody(boolean exposed, boolean isInterface) {
+            this.exposed = exposed;
+            this.isInterface = isInterface;
+        }
+    }
+
+    /**
+     * @param source The content of a java source file
+     * @return The packages of the types referenced by the public signatures of the source
+     */
+    static Set<String> referencedPackages(String source) {
+        String code = stripCommentsAndLiterals(source);
+
+        Map<String, String> singleImports = new HashMap<>();
+        List<String> wildcardImports = new ArrayList<>();
+        Matcher matcher = IMPORT.matcher(code);
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                // Static imports are members, not types
+                continue;
+            }
+            String name = matcher.group(2).replaceAll("\\s", "");
+            if (matcher.group(3) != null) {
+                wildcardImports.add(name);
+            } else {
+                String packageName = packageOf(name);
+                if (packageName != null) {
+                    singleImports.put(name.substring(name.lastIndexOf('.') + 1), packageName);
+                }
+            }
+        }
+
+        Set<String> packages = new HashSet<>();
+        List<String> declaration = new ArrayList<>();
+        Deque<TypeBody> bodies = new ArrayDeque<>();
+        // The top level: Only public types are exposed
+        bodies.push(new TypeBody(true, false));
+        int parenDepth = 0;
+        Tokenizer tokenizer = new Tokenizer(code);
+        for (String token = tokenizer.next(); token != null; token = tokenizer.next()) {
+            if ("(".equals(token)) {
+                ++parenDepth;
+            } else if (")".equals(token)) {
+                parenDepth = Math.max(0, parenDepth - 1);
+            } else if (parenDepth == 0) {
+                TypeBody body = bodies.peek();
+                switch (token) {
+                    case ";":
+                        addSignature(declaration, body, singleImports, wildcardImports, packages);
+                        declaration.clear();
+                        continue;
+                    case "=":
+                        // Field with an initializer
+                        addSignature(declaration, body, singleImports, wildcardImports, packages);
+                        declaration.clear();
+                        tokenizer.skipInitializer();
+                        continue;
+                    case "{":
+                        boolean exposed = addSignature(declaration, body, singleImports, wildcardImports, packages);
+                        if (declaration.contains("class") || declaration.contains("interface")
+                                || declaration.contains("enum")) {
+                            bodies.push(new TypeBody(exposed, declaration.contains("interface")));
+                        } else {
+                            // Method, constructor or initializer
+                            tokenizer.skipBlock();
+                        }
+                        declaration.clear();
+                        continue;
+                    case "}":
+                        if (bodies.size() > 1) {
+                            bodies.pop();
+                        }
+                        declaration.clear();
+                        continue;
+                    default:
+                        break;
+                }
+            }
+            declaration.add(token);
+        }
+        return packages;
+    }
+
+    /**
+     * Adds the packages referenced by the declaration if it is exposed.
+     *
+     * @return Returns true if the declaration is exposed
+     */
+    private static boolean addSignature(List<String> declaration, TypeBody body, Map<String, String> singleImports,
+            List<String> wildcardImports, Set<String> packages) {
+        if (declaration.isEmpty() || !body.exposed || declaration.contains("private")) {
+            return false;
+        }
+        if (!declaration.contains("public") && !declaration.contains("protected") && !body.isInterface) {
+            return false;
+        }
+        for (String token : declaration) {
+            if (!Character.isJavaIdentifierStart(token.charAt(0))) {
+                continue;
+            }
+            int dot = token.indexOf('.');
+            String first = dot < 0 ? token : token.substring(0, dot);
+            String imported = singleImports.get(first);
+            if (imported != null) {
+                packages.add(imported);
+            } else if (dot > 0) {
+                String packageName = packageOf(token);
+                if (packageName != null) {
+                    packages.add(packageName);
+                }
+            } else if (Character.isUpperCase(first.charAt(0))) {
+                // Might be a type of any wildcard import
+                packages.addAll(wildcardImports);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param qualifiedName A qualified type name, like org.example.Outer.Inner
+     * @return The package by the naming convention, the segments before the first capitalized one, or null
+     */
+    private static @Nullable String packageOf(String qualifiedName) {
+        int start = 0;
+        while (start < qualifiedName.length()) {
+            if (Character.isUpperCase(qualifiedName.charAt(start))) {
+                return start == 0 ? null : qualifiedName.substring(0, start - 1);
+            }
+            int dot = qualifiedName.indexOf('.', start);
+            if (dot < 0) {
+                break;
+            }
+            start = dot + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Replaces comments and string and character literals by spaces.
+     */
+    private static String stripCommentsAndLiterals(String source) {
+        char[] code = source.toCharArray();
+        int i = 0;
+        while (i < code.length) {
+            char c = code[i];
+            if (c == '/' && i + 1 < code.length && code[i + 1] == '/') {
+                while (i < code.length && code[i] != '\n') {
+                    code[i++] = ' ';
+                }
+            } else if (c == '/' && i + 1 < code.length && code[i + 1] == '*') {
+                code[i++] = ' ';
+                code[i++] = ' ';
+                while (i < code.length && !(code[i] == '*' && i + 1 < code.length && code[i + 1] == '/')) {
+                    code[i++] = ' ';
+                }
+                for (int end = Math.min(i + 2, code.length); i < end;) {
+                    code[i++] = ' ';
+                }
+            } else if (c == '"' || c == '\'') {
+                code[i++] = ' ';
+                while (i < code.length && code[i] != c && code[i] != '\n') {
+                    if (code[i] == '\\' && i + 1 < code.length) {
+                        code[i++] = ' ';
+                    }
+                    code[i++] = ' ';
+                }
+                if (i < code.length) {
+                    code[i++] = ' ';
+                }
+            } else {
+                ++i;
+            }
+        }
+        return new String(code);
+    }
+
+    /**
+     * Splits code without comments and literals into identifiers, qualified names included, and single characters.
+     */
+    private static class Tokenizer {
+        private final String code;
+        private int pos = 0;
+
+        Tokenizer(String code) {
+            this.code = code;
+        }
+
+        @Nullable
+        String next() {
+            while (pos < code.length() && Character.isWhitespace(code.charAt(pos))) {
+                ++pos;
+            }
+            if (pos >= code.length()) {
+                return null;
+            }
+            int start = pos;
+            if (!Character.isJavaIdentifierStart(code.charAt(pos))) {
+                return code.substring(start, ++pos);
+            }
+            while (true) {
+                while (pos < code.length() && Character.isJavaIdentifierPart(code.charAt(pos))) {
+                    ++pos;
+                }
+                // Continue with the next segment of a qualified name, but not with varargs
+                if (pos + 1 < code.length() && code.charAt(pos) == '.'
+                        && Character.isJavaIdentifierStart(code.charAt(pos + 1))) {
+                    ++pos;
+                } else {
+                    return code.substring(start, pos);
+                }
+            }
+        }
+
+        /**
+         * Skips the rest of a block after its opening brace.
+         */
+        void skipBlock() {
+            int depth = 1;
+            while (depth > 0 && pos < code.length()) {
+                char c = code.charAt(pos++);
+                if (c == '{') {
+                    ++depth;
+                } else if (c == '}') {
+                    --depth;
+                }
+            }
+        }
+
+        /**
+         * Skips a field initializer up to and including the terminating semicolon. Anonymous classes, lambdas and
+         * array initializers are skipped as a whole.
+         */
+        void skipInitializer() {
+            int depth = 0;
+            while (pos < code.length()) {
+                char c = code.charAt(pos++);
+                if (c == '{' || c == '(' || c == '[') {
+                    ++depth;
+                } else if (c == '}' || c == ')' || c == ']') {
+                    --depth;
+                } else if (c == ';' && depth <= 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -26,6 +26,62 @@ public class CliArguments {
             "--cache-file" }, description = "Dependency cache file. All resolved dependencies will be stored in this file")
     public String cacheFile = "dependency.cache.temp";
 
+    @Option(names = {
+            "--unresolved-cache-ttl" }, paramLabel = "DAYS", description = "Packages that could not be found on maven central are not looked up again for the given amount of days. Default is 7, 0 does not remember them at all.")
+    public int unresolvedCacheTtl = 7;
+
+    @Option(names = {
+            "--ignore-unresolved-cache" }, description = "Look up packages on maven central again, even if they could not be found recently. The remembered packages are kept.")
+    public boolean ignoreUnresolvedCache = false;
+
+    @Option(names = {
+            "--local-maven-repository" }, paramLabel = "~/.m2/repository", description = "A local maven repository. The package index is built out of all jars of this repository if it is missing or if jars were added, removed or changed.")
+    public Path localMavenRepository;
+
+    @Option(names = {
+            "--rebuild-package-index" }, description = "Build the package index of the local maven repository even if it is up to date.")
+    public boolean rebuildPackageIndex = false;
+
+    @Option(names = {
+            "--package-index" }, description = "Offline package index file. If it exists, packages are looked up in this index before maven central is asked.")
+    public String packageIndexFile = "package.index.temp";
+
+    @Option(names = {
+            "--transitive-dependencies" }, description = "Read the transitive dependencies of resolved artifacts from the POMs of a maven repository, see --pom-repository, and write them as module dependencies.")
+    public boolean transitiveDependencies = false;
+
+    @Option(names = {
+            "--pom-repository" }, paramLabel = "~/.m2/repository", description = "The maven repository with the POMs for --transitive-dependencies. Default is the --local-maven-repository if given, otherwise ~/.m2/repository. The package index is not affected.")
+    public Path pomRepository;
+
+    @Option(names = {
+            "--minimize-dependencies" }, description = "Leave out dependencies that another dependency of the bundle already provides transitively, in the same or a stronger configuration.")
+    public boolean minimizeDependencies = false;
+
+    @Option(names = {
+            "--incremental" }, description = "Convert only bundles whose inputs changed since the last run. The input hashes are recorded in the state file.")
+    public boolean incremental = false;
+
+    @Option(names = {
+            "--state-file" }, description = "State file of the incremental mode")
+    public String stateFile = "conversion.state.temp";
+
+    @Option(names = {
+            "--fast-delete" }, description = "Move test project directories into a trash directory and delete them in the background.")
+    public boolean fastDelete = false;
+
+    @Option(names = {
+            "--watch" }, description = "Keep running after the conversion and convert bundles again whose manifest, pom.xml or libraries change")
+    public boolean watch = false;
+
+    @Option(names = {
+            "--watch-debounce" }, paramLabel = "MILLISECONDS", description = "Time without further changes before changed bundles are converted in watch mode")
+    public int watchDebounce = 100;
+
+    @Option(names = {
+            "--rules-file" }, description = "Additional package rules for the dependency resolver. Rules replace built-in rules with the same package prefix. See resolverRules.txt for the format.")
+    public Path rulesFile;
+
     @Option(names = {
             "--enable-maven-coordinate-guess" }, description = "A MANIFEST.MF bundle entry needs to be converted to maven artifactID and groupID. If maven central cannot help, the coordinates will be assumed to be: ArtifactID=manifest-entry, GroupID=first-three-package-names-of-manifest-entry")
     public boolean mavenCoordinateGuess = false;
@@ -33,9 +89,29 @@ public class CliArguments {
     @Option(names = { "--override-existing" }, description = "Override existing build files. Default is true.")
     public boolean overrideExisting = true;
 
+    @Option(names = {
+            "--no-pin-versions" }, description = "Disable version pinning and write '+'. By default the highest version of the resolved artifact that is known to contain an imported package and matches the version range of the Import-Package entry is written. The range is a package version range, it is compared to artifact versions.")
+    public boolean pinVersions = true;
+
     @Option(names = { "--use-maven-central" }, description = "Disable dependency resolving via maven central")
     public boolean useMavenCentral = true;
 
+    @Option(names = {
+            "--search-url" }, paramLabel = "URL", description = "Solr search endpoint for maven central lookups. Default is http://search.maven.org/solrsearch/select.")
+    public String searchUrl = DependencyResolver.DEFAULT_SEARCH_URL;
+
+    @Option(names = {
+            "--max-concurrent-lookups" }, paramLabel = "N", description = "Maximum amount of maven central requests in flight. Default is 4.")
+    public int maxConcurrentLookups = 4;
+
+    @Option(names = { "-j",
+            "--jobs" }, paramLabel = "N", description = "Amount of bundles that are converted in parallel. Use 0 for the number of available processors. Default is 1.")
+    public int jobs = 1;
+
+    @Option(names = {
+            "--metrics-out" }, paramLabel = "FILE", description = "Write a json report with the wall time of each stage, resolver and writer counters and maven central latencies.")
+    public Path metricsOut;
+
     @Option(names = { "-h", "--help" }, usageHelp = true, description = "display a help message")
     private boolean usageHelpRequested = false;
 
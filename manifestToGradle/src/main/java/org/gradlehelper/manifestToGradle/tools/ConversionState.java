@@ -0,0 +1,207 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * State of the incremental conversion mode. Stores a SHA-256 hash of the inputs of each converted bundle, keyed by
+ * the bundle directory relative to the input directory. A bundle needs to be converted again if the hash of its
+ * inputs differs from the stored one.
+ *
+ * Inputs that are shared by all bundles, like the resolver rules, are hashed once and are part of every bundle hash.
+ * The state is thread-safe.
+ */
+public class ConversionState {
+    private final Path stateFile;
+    private final Path inputDir;
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+    private volatile byte[] sharedInputs;
+
+    /**
+     * Loads the state file if it exists.
+     *
+     * @param stateFile The state file
+     * @param inputDir The input directory. Bundles are stored relative to it.
+     * @param sharedInputs The hash of inputs shared by all bundles, see {@link Hasher}.
+     * @throws IOException If the state file exists but could not be read
+     */
+    public ConversionState(Path stateFile, Path inputDir, byte[] sharedInputs) throws IOException {
+        this.stateFile = stateFile;
+        this.inputDir = inputDir;
+        this.sharedInputs = sharedInputs;
+        if (Files.exists(stateFile)) {
+            Type type = new TypeToken<Map<String, String>>() {
+            }.getType();
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                Map<String, String> stored = new Gson().fromJson(reader, type);
+                if (stored != null) {
+                    hashes.putAll(stored);
+                }
+            } catch (JsonParseException e) {
+                System.err.println("Ignore corrupted state file " + stateFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Incrementally computes a SHA-256 hash. Files and strings are prefixed with their length, so that the
+     * boundaries of the inputs are part of the hash.
+     */
+    public static class Hasher {
+        private final MessageDigest digest;
+
+        public Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public Hasher add(@Nullable String value) {
+            if (value == null) {
+                addLength(-1);
+            } else {
+                add(value.getBytes(StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        public Hasher add(byte[] value) {
+            addLength(value.length);
+            digest.update(value);
+            return this;
+        }
+
+        /**
+         * Adds the content of a file. A missing file is hashed differently than an empty one.
+         *
+         * @param file A file
+         * @return Returns this hasher
+         * @throws IOException If the file exists but could not be read
+         */
+        public Hasher addFile(Path file) throws IOException {
+            if (!Files.isRegularFile(file)) {
+                addLength(-1);
+                return this;
+            }
+            return add(Files.readAllBytes(file));
+        }
+
+        /**
+         * Adds the remaining content of a stream. The stream is not closed.
+         *
+         * @param in A stream
+         * @return Returns this hasher
+         * @throws IOException If the stream could not be read
+         */
+        public Hasher add(InputStream in) throws IOException {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return add(content.toByteArray());
+        }
+
+        private void addLength(int length) {
+            digest.update((byte) (length >>> 24));
+            digest.update((byte) (length >>> 16));
+            digest.update((byte) (length >>> 8));
+            digest.update((byte) length);
+        }
+
+        public byte[] finish() {
+            return digest.digest();
+        }
+    }
+
+    /**
+     * Replaces the hash of the shared inputs, after they changed. Bundles are converted again on their next
+     * conversion.
+     *
+     * @param sharedInputs The hash of inputs shared by all bundles
+     */
+    public void setSharedInputs(byte[] sharedInputs) {
+        this.sharedInputs = sharedInputs;
+    }
+
+    /**
+     * @return Returns a new hasher, initialized with the shared inputs
+     */
+    public Hasher newBundleHasher() {
+        return new Hasher().add(sharedInputs);
+    }
+
+    private String key(Path projectDir) {
+        return inputDir.relativize(projectDir).toString().replace('\\', '/');
+    }
+
+    /**
+     * @param projectDir A bundle directory
+     * @param hash The hash of the current inputs of the bundle
+     * @return Returns true if the bundle was converted with the same inputs before
+     */
+    public boolean isUnchanged(Path projectDir, byte[] hash) {
+        return toHex(hash).equals(hashes.get(key(projectDir)));
+    }
+
+    /**
+     * Records a successful conversion.
+     *
+     * @param projectDir A bundle directory
+     * @param hash The hash of the inputs the bundle was converted with
+     */
+    public void converted(Path projectDir, byte[] hash) {
+        hashes.put(key(projectDir), toHex(hash));
+    }
+
+    /**
+     * Writes the state file. A temporary file is moved into place, so a crash never leaves a truncated file behind.
+     *
+     * @throws IOException If the state file could not be written
+     */
+    public void write() throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            gson.toJson(new TreeMap<>(hashes), writer);
+        }
+        try {
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder builder = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -6,8 +6,11 @@ import java.util.regex.Pattern;
 /**
  * Represents a dependency including the gradle type of the dependency, e.g. "compile"/"testCompile"/"runtime".
  */
-public class DepWithGradleType extends Dependency {
-    public transient String gradletype = null;
+public class DepWithGradleType {
+    private static final Pattern GRADLE_LINE = Pattern.compile("(.*) '(.*):(.*):(.*)'");
+
+    public final Dependency dependency;
+    public final String gradletype;
 
     /**
      * Constructor to create a dependency object from a gradle line like: "implementation 'org.slf4j:slf4j-api:+'"
@@ -15,15 +18,12 @@ public class DepWithGradleType extends Dependency {
      * @param gradleLine A valid gradle line. Will throw an IllegalArgumentException if not valid.
      */
     public DepWithGradleType(String gradleLine) {
-        Pattern pattern = Pattern.compile("(.*) '(.*):(.*):(.*)'");
-        Matcher matcher = pattern.matcher(gradleLine);
+        Matcher matcher = GRADLE_LINE.matcher(gradleLine);
         if (matcher.find()) {
             gradletype = matcher.group(1);
-            group = matcher.group(2);
-            name = matcher.group(3);
-            version = matcher.group(4);
+            dependency = Dependency.of(matcher.group(3), matcher.group(2), matcher.group(4));
         } else {
             throw new IllegalArgumentException("Gradle line not valid: " + gradleLine);
         }
     }
-}
\ No newline at end of file
+}
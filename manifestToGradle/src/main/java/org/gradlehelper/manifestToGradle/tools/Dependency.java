@@ -1,53 +1,244 @@
 package org.gradlehelper.manifestToGradle.tools;
 
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 /**
- * Represent a dependency. Contains maven coordinates and transitive dependencies.
+ * Represent a dependency. Contains maven coordinates and transitive dependencies. A transitive dependency is either
+ * needed for compilation or only at runtime, like the maven "compile" and "runtime" scopes.
+ *
+ * Dependencies are immutable and can be shared between bundles and threads. Dependencies without transitive
+ * dependencies are canonical instances of an intern pool, see {@link #of(String, String, String)}. The pool only
+ * references them weakly, so that dependencies no longer used by the resolver cache or a conversion, for example
+ * in a long running watch mode, are collected. The hash code is computed once.
  */
+@JsonAdapter(Dependency.GsonAdapter.class)
 public class Dependency implements Comparable<Dependency> {
-    public String group = "";
-    public String name = "";
-    public String version = "";
-    protected String latestKnownVersion = "";
-    Map<String, Dependency> transitiveDependecy = new HashMap<>();
+    private static final ConcurrentHashMap<Coordinates, PoolEntry> POOL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Dependency> COLLECTED = new ReferenceQueue<>();
+
+    private final String group;
+    private final String name;
+    private final String version;
+    private final String latestKnownVersion;
+    // Keyed by the coordinates of the transitive dependency
+    private final Map<String, Dependency> transitiveDependencies;
+    // The coordinates of the transitive dependencies that are only needed at runtime
+    private final Set<String> runtimeDependencies;
+    private final int hash;
 
-    protected Dependency() {
+    protected Dependency(String name, String group, String version) {
+        this(name, group, version, version, Collections.emptyMap(), Collections.emptySet());
     }
 
-    public Dependency(String name, String group, String version) {
+    private Dependency(String name, String group, String version, String latestKnownVersion,
+            Map<String, Dependency> transitiveDependencies, Set<String> runtimeDependencies) {
         this.name = name;
         this.group = group;
         this.version = version;
-        this.latestKnownVersion = version;
+        this.latestKnownVersion = latestKnownVersion;
+        this.transitiveDependencies = transitiveDependencies;
+        this.runtimeDependencies = runtimeDependencies;
+        this.hash = 31 * (31 * group.hashCode() + name.hashCode()) + version.hashCode();
+    }
+
+    /**
+     * The key of the intern pool. Unlike a dependency as key, it doesn't keep the pooled dependency alive.
+     */
+    private static class Coordinates {
+        final String name;
+        final String group;
+        final String version;
+        final int hash;
+
+        Coordinates(String name, String group, String version) {
+            this.name = name;
+            this.group = group;
+            this.version = version;
+            this.hash = 31 * (31 * group.hashCode() + name.hashCode()) + version.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Coordinates)) {
+                return false;
+            }
+            Coordinates c = (Coordinates) obj;
+            return hash == c.hash && name.equals(c.name) && group.equals(c.group) && version.equals(c.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class PoolEntry extends WeakReference<Dependency> {
+        final Coordinates key;
+
+        PoolEntry(Dependency dependency, Coordinates key) {
+            super(dependency, COLLECTED);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Returns the canonical dependency of the given coordinates, without transitive dependencies.
+     *
+     * @param name The artifact ID
+     * @param group The group ID
+     * @param version The version
+     * @return Returns the dependency
+     */
+    public static Dependency of(String name, String group, String version) {
+        expungeCollected();
+        Coordinates key = new Coordinates(name, group, version);
+        while (true) {
+            PoolEntry entry = POOL.get(key);
+            Dependency existing = entry != null ? entry.get() : null;
+            if (existing != null) {
+                return existing;
+            }
+            // Absent or collected: Another thread might intern the same coordinates concurrently
+            Dependency dependency = new Dependency(name, group, version);
+            PoolEntry created = new PoolEntry(dependency, key);
+            if (entry == null ? POOL.putIfAbsent(key, created) == null : POOL.replace(key, entry, created)) {
+                return dependency;
+            }
+        }
+    }
+
+    /**
+     * Removes the pool entries of collected dependencies.
+     */
+    private static void expungeCollected() {
+        Reference<? extends Dependency> collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            PoolEntry entry = (PoolEntry) collected;
+            POOL.remove(entry.key, entry);
+        }
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The latest version that was known when the dependency was resolved
+     */
+    public String getLatestKnownVersion() {
+        return latestKnownVersion;
     }
 
-    public void addTransitiveDependency(Dependency d) {
-        if (d != null) {
-            transitiveDependecy.put(d.toString(), d);
+    /**
+     * Returns this dependency with another version. Transitive dependencies are kept.
+     *
+     * @param version A version
+     * @return Returns a dependency
+     */
+    public Dependency withVersion(String version) {
+        if (this.version.equals(version)) {
+            return this;
         }
+        if (transitiveDependencies.isEmpty()) {
+            return of(name, group, version);
+        }
+        return new Dependency(name, group, version, version, transitiveDependencies, runtimeDependencies);
+    }
+
+    /**
+     * Returns this dependency with the given transitive dependencies instead of its own.
+     *
+     * @param dependencies The transitive dependencies
+     * @return Returns a dependency
+     */
+    public Dependency withTransitiveDependencies(Collection<Dependency> dependencies) {
+        return withTransitiveDependencies(dependencies, Collections.emptyList());
+    }
+
+    /**
+     * Returns this dependency with the given transitive dependencies instead of its own.
+     *
+     * @param dependencies The transitive dependencies that are needed for compilation
+     * @param runtimeDependencies The transitive dependencies that are only needed at runtime
+     * @return Returns a dependency
+     */
+    public Dependency withTransitiveDependencies(Collection<Dependency> dependencies,
+            Collection<Dependency> runtimeDependencies) {
+        if (dependencies.isEmpty() && runtimeDependencies.isEmpty()) {
+            return of(name, group, version);
+        }
+        Map<String, Dependency> transitive = new HashMap<>();
+        for (Dependency dependency : dependencies) {
+            transitive.put(dependency.toString(), dependency);
+        }
+        Set<String> runtime = new HashSet<>();
+        for (Dependency dependency : runtimeDependencies) {
+            transitive.put(dependency.toString(), dependency);
+            runtime.add(dependency.toString());
+        }
+        return new Dependency(name, group, version, latestKnownVersion, Collections.unmodifiableMap(transitive),
+                runtime.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(runtime));
     }
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (!(obj instanceof Dependency)) {
             return false;
         }
         Dependency d = (Dependency) obj;
-        return name.equals(d.name) && group.equals(d.group) && version.equals(d.version);
+        return hash == d.hash && name.equals(d.name) && group.equals(d.group) && version.equals(d.version);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(group, name, version);
+        return hash;
     }
 
+    /**
+     * Orders by group and name like (group + name).compareTo(o.group + o.name), without concatenating.
+     */
     @Override
     public int compareTo(Dependency o) {
-        return (group + name).compareTo(o.group + o.name);
+        int length = group.length() + name.length();
+        int otherLength = o.group.length() + o.name.length();
+        int limit = Math.min(length, otherLength);
+        for (int i = 0; i < limit; ++i) {
+            char c = i < group.length() ? group.charAt(i) : name.charAt(i - group.length());
+            char other = i < o.group.length() ? o.group.charAt(i) : o.name.charAt(i - o.group.length());
+            if (c != other) {
+                return c - other;
+            }
+        }
+        return length - otherLength;
     }
 
     @Override
@@ -63,19 +254,131 @@ public class Dependency implements Comparable<Dependency> {
      */
     public static Dependency ByMavenCoord(String line, String... transitive) {
         String[] coordinates = line.split(":");
-        Dependency dependency = new Dependency(coordinates[1], coordinates[0], coordinates[2]);
+        List<Dependency> transitiveDependencies = new ArrayList<>();
         for (String dep : transitive) {
             String[] tCoordinates = dep.split(":");
-            dependency.addTransitiveDependency(new Dependency(tCoordinates[1], tCoordinates[0], tCoordinates[2]));
+            transitiveDependencies.add(of(tCoordinates[1], tCoordinates[0], tCoordinates[2]));
         }
-        return dependency;
+        return of(coordinates[1], coordinates[0], coordinates[2]).withTransitiveDependencies(transitiveDependencies);
     }
 
     public boolean hasTransitiveDependencies() {
-        return !transitiveDependecy.isEmpty();
+        return !transitiveDependencies.isEmpty();
     }
 
     public Collection<Dependency> getTransitiveDeps() {
-        return transitiveDependecy.values();
+        return transitiveDependencies.values();
+    }
+
+    /**
+     * @param transitive A transitive dependency of this dependency
+     * @return Returns true if the transitive dependency is only needed at runtime, not for compilation
+     */
+    public boolean isRuntimeDependency(Dependency transitive) {
+        return !runtimeDependencies.isEmpty() && runtimeDependencies.contains(transitive.toString());
+    }
+
+    /**
+     * Reads and writes the json format of the dependency cache. Read dependencies are interned.
+     */
+    static class GsonAdapter extends TypeAdapter<Dependency> {
+        @Override
+        public void write(JsonWriter out, Dependency dependency) throws IOException {
+            if (dependency == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("group").value(dependency.group);
+            out.name("name").value(dependency.name);
+            out.name("version").value(dependency.version);
+            out.name("latestKnownVersion").value(dependency.latestKnownVersion);
+            out.name("transitiveDependecy").beginObject();
+            for (Map.Entry<String, Dependency> transitive : dependency.transitiveDependencies.entrySet()) {
+                out.name(transitive.getKey());
+                write(out, transitive.getValue());
+            }
+            out.endObject();
+            // Only written if present, the common case keeps the format of older versions
+            if (!dependency.runtimeDependencies.isEmpty()) {
+                out.name("runtimeDependencies").beginArray();
+                for (String runtime : dependency.runtimeDependencies) {
+                    out.value(runtime);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Dependency read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String group = "";
+            String name = "";
+            String version = "";
+            String latestKnownVersion = null;
+            List<Dependency> transitive = new ArrayList<>();
+            Set<String> runtime = new HashSet<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "group":
+                        group = in.nextString();
+                        break;
+                    case "name":
+                        name = in.nextString();
+                        break;
+                    case "version":
+                        version = in.nextString();
+                        break;
+                    case "latestKnownVersion":
+                        latestKnownVersion = in.nextString();
+                        break;
+                    case "transitiveDependecy":
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            in.nextName();
+                            Dependency dependency = read(in);
+                            if (dependency != null) {
+                                transitive.add(dependency);
+                            }
+                        }
+                        in.endObject();
+                        break;
+                    case "runtimeDependencies":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            runtime.add(in.nextString());
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+
+            List<Dependency> compileDependencies = new ArrayList<>();
+            List<Dependency> runtimeDependencies = new ArrayList<>();
+            for (Dependency dependency : transitive) {
+                (runtime.contains(dependency.toString()) ? runtimeDependencies : compileDependencies).add(dependency);
+            }
+            Dependency dependency = of(name, group, version).withTransitiveDependencies(compileDependencies,
+                    runtimeDependencies);
+            if (latestKnownVersion == null || latestKnownVersion.equals(version)) {
+                return dependency;
+            }
+            return new Dependency(name, group, version, latestKnownVersion, dependency.transitiveDependencies,
+                    dependency.runtimeDependencies);
+        }
     }
-}
\ No newline at end of file
+}
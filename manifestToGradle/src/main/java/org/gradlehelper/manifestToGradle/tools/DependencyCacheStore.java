@@ -0,0 +1,235 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Log structured persistent store for the dependency resolver cache. The store consists of two files:
+ * <ul>
+ * <li>A compacted snapshot, the cache file itself. A json array with one entry per line.</li>
+ * <li>An append-only journal ("cache file".log) with one json entry per line.</li>
+ * </ul>
+ *
+ * New resolutions are appended to the journal, the cost of persisting an entry is therefore independent of the cache
+ * size. The journal is merged into the snapshot by {@link #compact(Map, Map)} once it grew large enough. The
+ * snapshot is written to a temporary file and moved into place, so a crash never leaves a truncated snapshot behind.
+ * A truncated last journal line is ignored while loading.
+ *
+ * Besides resolved dependencies the store keeps negative entries: Package names that could not be resolved and the
+ * time of the failed lookup.
+ *
+ * Old cache files, containing a single json object, are still accepted as a snapshot.
+ */
+public class DependencyCacheStore {
+    // The journal is compacted if it contains more entries than this or than the snapshot
+    private static final int MIN_COMPACTION_ENTRIES = 100;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Gson gson = new Gson();
+    private @Nullable Writer journal;
+    private int snapshotEntries = 0;
+    private int journalEntries = 0;
+
+    private static class Entry {
+        String key;
+        // Null for negative entries
+        @Nullable
+        Dependency dependency;
+        // Unix timestamp of the failed lookup for negative entries
+        long unresolvedSince;
+
+        Entry(String key, @Nullable Dependency dependency, long unresolvedSince) {
+            this.key = key;
+            this.dependency = dependency;
+            this.unresolvedSince = unresolvedSince;
+        }
+
+        void addTo(Map<String, Dependency> dependencies, Map<String, Long> unresolved) {
+            Dependency dependency = this.dependency;
+            if (dependency != null) {
+                dependencies.put(key, dependency);
+                unresolved.remove(key);
+            } else {
+                unresolved.put(key, unresolvedSince);
+                dependencies.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Create a store for the given cache file. Nothing is read or written until {@link #load(Map, Map)} is called.
+     *
+     * @param cacheFile The snapshot file. The journal is stored next to it.
+     */
+    public DependencyCacheStore(Path cacheFile) {
+        this.snapshotFile = cacheFile;
+        this.journalFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".log");
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     *
+     * @param dependencies Will be filled with all resolved dependencies
+     * @param unresolved Will be filled with all negative entries
+     * @throws IOException If the snapshot could not be read
+     */
+    public synchronized void load(Map<String, Dependency> dependencies, Map<String, Long> unresolved)
+            throws IOException {
+        if (Files.exists(snapshotFile) && Files.size(snapshotFile) > 0) {
+            try (JsonReader reader = new JsonReader(Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8))) {
+                if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    // Cache file of an older version: A single map of package name -> dependency
+                    Type typeOfHashMap = new TypeToken<Map<String, Dependency>>() {
+                    }.getType();
+                    Map<String, Dependency> t = gson.fromJson(reader, typeOfHashMap);
+                    if (t != null) {
+                        dependencies.putAll(t);
+                    }
+                } else {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Entry entry = gson.fromJson(reader, Entry.class);
+                        entry.addTo(dependencies, unresolved);
+                    }
+                    reader.endArray();
+                }
+            } catch (JsonParseException | IllegalStateException e) {
+                throw new IOException("Dependency cache file corrupted: " + snapshotFile, e);
+            }
+        }
+        snapshotEntries = dependencies.size() + unresolved.size();
+
+        journalEntries = 0;
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Entry entry;
+                    try {
+                        entry = gson.fromJson(line, Entry.class);
+                    } catch (JsonParseException e) {
+                        System.err.println("Ignore incomplete dependency cache journal entry: " + line);
+                        continue;
+                    }
+                    if (entry != null && entry.key != null) {
+                        entry.addTo(dependencies, unresolved);
+                        ++journalEntries;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Append a new or changed entry to the journal.
+     *
+     * @param key The package name
+     * @param dependency The resolved dependency
+     * @throws IOException If the journal could not be written
+     */
+    public synchronized void append(String key, Dependency dependency) throws IOException {
+        append(new Entry(key, dependency, 0));
+    }
+
+    /**
+     * Append a negative entry to the journal.
+     *
+     * @param key The package name
+     * @param unresolvedSince The unix timestamp of the failed lookup
+     * @throws IOException If the journal could not be written
+     */
+    public synchronized void appendUnresolved(String key, long unresolvedSince) throws IOException {
+        append(new Entry(key, null, unresolvedSince));
+    }
+
+    private void append(Entry entry) throws IOException {
+        Writer writer = journal;
+        if (writer == null) {
+            writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+            journal = writer;
+        }
+        writer.write(gson.toJson(entry));
+        writer.write('\n');
+        writer.flush();
+        ++journalEntries;
+    }
+
+    /**
+     * @return Returns true if the journal grew large enough to be merged into the snapshot
+     */
+    public synchronized boolean needsCompaction() {
+        return journalEntries >= Math.max(MIN_COMPACTION_ENTRIES, snapshotEntries);
+    }
+
+    /**
+     * Writes a new snapshot with the given entries and starts a new, empty journal.
+     *
+     * @param dependencies All resolved dependencies of the cache
+     * @param unresolved All negative entries that should be kept
+     * @throws IOException If the snapshot could not be written
+     */
+    public synchronized void compact(Map<String, Dependency> dependencies, Map<String, Long> unresolved)
+            throws IOException {
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        int count = 0;
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (Map.Entry<String, Dependency> entry : dependencies.entrySet()) {
+                if (count++ > 0) {
+                    writer.write(",\n");
+                }
+                writer.write(gson.toJson(new Entry(entry.getKey(), entry.getValue(), 0)));
+            }
+            for (Map.Entry<String, Long> entry : unresolved.entrySet()) {
+                if (count++ > 0) {
+                    writer.write(",\n");
+                }
+                writer.write(gson.toJson(new Entry(entry.getKey(), null, entry.getValue())));
+            }
+            writer.write("\n]\n");
+        }
+        try {
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // All journal entries are part of the snapshot now
+        close();
+        Files.deleteIfExists(journalFile);
+        snapshotEntries = count;
+        journalEntries = 0;
+    }
+
+    /**
+     * Closes the journal. It is reopened on the next append.
+     *
+     * @throws IOException If the journal could not be closed
+     */
+    public synchronized void close() throws IOException {
+        Writer writer = journal;
+        journal = null;
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the dependencies of a bundle that are already provided transitively by another dependency of the bundle,
+ * in the same or a stronger configuration. The strength of a configuration is given by the configuration order,
+ * lower values are stronger. Two further rules apply: compileOnly dependencies only provide compileOnly
+ * dependencies, they are not on the runtime and test classpaths, and test configurations only provide test
+ * configurations. Configurations that are not in the order only provide themselves.
+ *
+ * A dependency with a pinned version is only provided by a transitive dependency of the same or a higher version,
+ * Gradle would resolve the higher one anyway. "+" is the latest version. Transitive dependencies that are only
+ * needed at runtime, and their dependencies, provide nothing: The bundle might not compile without them.
+ *
+ * Dependencies are visited strongest first and those with more transitive dependencies first. A dependency is only
+ * removed by a dependency that is kept, so that of two dependencies providing each other one is kept.
+ */
+public class DependencyMinimizer {
+    private final Map<String, Integer> typeOrder;
+
+    private static class Candidate {
+        final Dependency dependency;
+        final String type;
+        // group:name -> the highest provided version
+        final Map<String, String> provided;
+
+        Candidate(Dependency dependency, String type, Map<String, String> provided) {
+            this.dependency = dependency;
+            this.type = type;
+            this.provided = provided;
+        }
+    }
+
+    /**
+     * @param typeOrder The gradle configurations and their order, lower values are stronger
+     */
+    public DependencyMinimizer(Map<String, Integer> typeOrder) {
+        this.typeOrder = typeOrder;
+    }
+
+    /**
+     * @param dependencies The dependencies of a bundle and their gradle configurations
+     * @return Returns the dependencies that are not provided by other dependencies
+     */
+    public Map<Dependency, String> minimize(Map<Dependency, String> dependencies) {
+        List<Candidate> candidates = new ArrayList<>(dependencies.size());
+        boolean anyTransitive = false;
+        for (Map.Entry<Dependency, String> entry : dependencies.entrySet()) {
+            Map<String, String> provided = new HashMap<>();
+            collectProvided(entry.getKey(), provided, Collections.newSetFromMap(new IdentityHashMap<>()));
+            candidates.add(new Candidate(entry.getKey(), entry.getValue(), provided));
+            anyTransitive |= !provided.isEmpty();
+        }
+        if (!anyTransitive) {
+            return dependencies;
+        }
+        candidates.sort(Comparator.<Candidate> comparingInt(c -> typeOrder.getOrDefault(c.type, Integer.MAX_VALUE))
+                .thenComparing(c -> -c.provided.size()).thenComparing(c -> c.dependency.toString())
+                .thenComparing(c -> c.type));
+
+        List<Candidate> kept = new ArrayList<>(candidates.size());
+        Map<Dependency, String> minimized = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            if (!isProvided(candidate, kept)) {
+                kept.add(candidate);
+                minimized.put(candidate.dependency, candidate.type);
+            }
+        }
+        return minimized;
+    }
+
+    private boolean isProvided(Candidate candidate, List<Candidate> kept) {
+        String key = candidate.dependency.getGroup() + ":" + candidate.dependency.getName();
+        for (Candidate provider : kept) {
+            String version = provider.provided.get(key);
+            if (version != null && providesType(provider.type, candidate.type)
+                    && providesVersion(version, candidate.dependency.getVersion())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean providesType(String provider, String type) {
+        Integer providerOrder = typeOrder.get(provider);
+        Integer order = typeOrder.get(type);
+        if (providerOrder == null || order == null) {
+            return provider.equals(type);
+        }
+        if ("compileOnly".equals(provider) && !"compileOnly".equals(type)) {
+            return false;
+        }
+        if (provider.startsWith("test") && !type.startsWith("test")) {
+            return false;
+        }
+        return providerOrder <= order;
+    }
+
+    private static boolean providesVersion(String provided, String version) {
+        if (provided.equals(version) || "+".equals(provided)) {
+            return true;
+        }
+        return !"+".equals(version) && new ComparableVersion(provided).compareTo(new ComparableVersion(version)) >= 0;
+    }
+
+    /**
+     * Collects the transitive dependencies of the given dependency that are needed for compilation, not the
+     * dependency itself. Shared nodes of the dependency graph are visited once.
+     */
+    private static void collectProvided(Dependency dependency, Map<String, String> provided, Set<Dependency> visited) {
+        for (Dependency transitive : dependency.getTransitiveDeps()) {
+            if (dependency.isRuntimeDependency(transitive) || !visited.add(transitive)) {
+                continue;
+            }
+            provided.merge(transitive.getGroup() + ":" + transitive.getName(), transitive.getVersion(),
+                    (a, b) -> providesVersion(a, b) ? a : b);
+            collectProvided(transitive, provided, visited);
+        }
+    }
+}
@@ -1,149 +1,58 @@
 package org.gradlehelper.manifestToGradle.tools;
 
 import java.io.BufferedInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
 
 /**
- * Resolves dependencies, provided by package class names, with a best effort approach. Maven central and a static
- * list is used.
+ * Resolves dependencies, provided by package class names, with a best effort approach. Package prefix
+ * {@link ResolverRules}, an optional offline {@link PackageIndex} and maven central are used.
+ *
+ * The resolver is thread-safe and may be shared by concurrently converted bundles. Returned dependencies are shared
+ * cache entries and must not be modified.
+ *
+ * Maven central lookups are performed asynchronously by a bounded amount of lookup threads. Concurrent requests for
+ * the same package name are coalesced into a single lookup.
  */
 public class DependencyResolver {
+    public static final String DEFAULT_SEARCH_URL = "http://search.maven.org/solrsearch/select";
+
     // This map is populated in the constructor from a cache file
     private final Map<String, Dependency> dependencyCache;
-    private final Path cacheFile;
-    private int resolved = 0;
+    // Negative entries: Package name -> unix timestamp of the failed maven central lookup
+    private final Map<String, Long> unresolvedCache = new ConcurrentHashMap<>();
+    private final long unresolvedCacheTtl;
+    private boolean ignoreUnresolvedCache;
+    private final DependencyCacheStore cacheStore;
     private final long oldestArchive;
     private boolean mavenCoordinateGuess;
     private boolean useMavenCentral;
-
-    private static Map<String, Dependency> smarthomePackages = new HashMap<>();
-
-    private static void addSmarthomePackage(Dependency... dependencies) {
-        for (Dependency dep : dependencies) {
-            smarthomePackages.put(dep.name, dep);
-        }
-    }
-
-    {
-        addSmarthomePackage(Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.audio:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.autoupdate:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.binding.xml:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.extension.sample:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.id.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.id:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.persistence:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.scheduler:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.scriptengine:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.thing.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.thing.xml:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.thing:+",
-                        "org.osgi:org.osgi.util.tracker:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.transform.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.transform:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core.voice:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.core:org.eclipse.smarthome.core:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.config:org.eclipse.smarthome.config.core:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.config:org.eclipse.smarthome.config.discovery.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.config:org.eclipse.smarthome.config.discovery:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.config:org.eclipse.smarthome.config.dispatch:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.config:org.eclipse.smarthome.config.xml:+"),
-                Dependency
-                        .ByMavenCoord("org.eclipse.smarthome.automation:org.eclipse.smarthome.automation.core.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.console.eclipse:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.console.karaf:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.console.rfc147:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.console:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.javasound:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.monitor:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.net.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.net:+",
-                        "org.apache.commons:commons-exec:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.core.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.core:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.mdns:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.sitemap:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.sse.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.sse:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.rest:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.transport.mdns:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.transport.mqtt:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.transport.upnp.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.transport.upnp:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.core:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.item.runtime:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.item.tests:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.item.ui:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.item:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.lazygen:+"),
-                Dependency
-                        .ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.persistence.runtime:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.persistence.tests:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.persistence.ui:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.persistence:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.rule.runtime:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.rule.tests:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.rule.ui:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.rule:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.script.runtime:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.script.tests:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.script.ui:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.script:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.sitemap.runtime:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.sitemap:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.thing.runtime:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.thing.tests:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.thing.ui:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.model:org.eclipse.smarthome.model.thing:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.exec:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.javascript:+"),
-                Dependency.ByMavenCoord(
-                        "org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.jsonpath.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.jsonpath:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.map.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.map:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.regex.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.regex:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.scale.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.scale:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.xpath.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.xpath:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.xslt.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.transform:org.eclipse.smarthome.transform.xslt:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.storage:org.eclipse.smarthome.storage.mapdb.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.storage:org.eclipse.smarthome.storage.mapdb:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.voice:org.eclipse.smarthome.voice.mactts.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.voice:org.eclipse.smarthome.voice.mactts:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.ui:org.eclipse.smarthome.ui.classic:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.ui:org.eclipse.smarthome.ui.icon.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.ui:org.eclipse.smarthome.ui.icon:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.ui:org.eclipse.smarthome.ui.test:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.ui:org.eclipse.smarthome.ui.webapp:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.ui:org.eclipse.smarthome.ui:+"),
-                Dependency.ByMavenCoord("org.eclipse.smarthome.test:org.eclipse.smarthome.test:+"));
-    };
+    private final ExecutorService lookupExecutor;
+    private @Nullable PackageIndex packageIndex;
+    private RunMetrics metrics = new RunMetrics();
+    private String searchUrl = DEFAULT_SEARCH_URL;
+    // Maven central lookups in flight. Requests for the same package name share the future.
+    private final Map<String, CompletableFuture<Dependency>> pendingLookups = new ConcurrentHashMap<>();
+    private volatile ResolverRules rules;
+    // Versions that are known to provide a package: "package group:name" -> versions
+    private final Map<String, Set<String>> knownVersions = new ConcurrentHashMap<>();
 
     private static class MavenCentralLookupDoc {
         String id;
@@ -178,84 +87,198 @@ public class DependencyResolver {
     /**
      * Create a new dependency resolver. A cache file is required.
      *
-     * @param cacheFile A path to an existing or not existing cache file. The file will be loaded immediately and saved
-     *            whenever writeCache() is called.
+     * @param cacheFile A path to an existing or not existing cache file. The file will be loaded immediately. New
+     *            entries are appended to the cache journal, see {@link DependencyCacheStore}.
+     * @param rules Package prefix rules that are applied before any lookup
      * @param maxAge A maximum age for maven central packets as a unix timestamp
      * @param mavenCoordinateGuess Guess maven coordinates by manifest entry
      * @param useMavenCentral Use maven central API to find maven coordinates for manifest entry
-     * @throws JsonIOException
-     * @throws JsonSyntaxException
-     * @throws FileNotFoundException
+     * @param maxConcurrentLookups The maximum amount of maven central requests in flight
+     * @param unresolvedCacheTtl Time in milliseconds a package that could not be found on maven central is not looked
+     *            up again. Older negative cache entries are dropped, use 0 to not keep any.
+     * @throws IOException If the cache file could not be read
      */
-    public DependencyResolver(Path cacheFile, long maxAge, boolean mavenCoordinateGuess, boolean useMavenCentral)
-            throws JsonIOException, JsonSyntaxException, FileNotFoundException {
-        this.cacheFile = cacheFile;
+    public DependencyResolver(Path cacheFile, ResolverRules rules, long maxAge, boolean mavenCoordinateGuess,
+            boolean useMavenCentral, int maxConcurrentLookups, long unresolvedCacheTtl) throws IOException {
+        this.cacheStore = new DependencyCacheStore(cacheFile);
+        this.rules = rules;
+        this.unresolvedCacheTtl = unresolvedCacheTtl;
         this.oldestArchive = maxAge;
         this.mavenCoordinateGuess = mavenCoordinateGuess;
         this.useMavenCentral = useMavenCentral;
-        Type typeOfHashMap = new TypeToken<Map<String, Dependency>>() {
-        }.getType();
-        if (Files.exists(cacheFile)) {
-            Gson gson = new Gson();
-            Map<String, Dependency> t = gson.fromJson(new FileReader(cacheFile.toFile()), typeOfHashMap);
-            dependencyCache = t != null ? t : new HashMap<>();
-        } else {
-            dependencyCache = new HashMap<>();
-        }
+        this.lookupExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentLookups), runnable -> {
+            Thread thread = new Thread(runnable, "maven-central-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dependencyCache = new ConcurrentHashMap<>();
+        cacheStore.load(dependencyCache, unresolvedCache);
+        dependencyCache.forEach(this::rememberVersions);
+    }
+
+    /**
+     * Replaces the package rules, for example after the rules file changed. Cached dependencies are kept.
+     *
+     * @param rules Package prefix rules that are applied before any lookup
+     */
+    public void setRules(ResolverRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Look up packages again even if maven central did not know them recently. The negative cache entries are only
+     * bypassed for this run, they are kept and expire as configured.
+     *
+     * @param ignoreUnresolvedCache True to ignore the negative cache entries
+     */
+    public void setIgnoreUnresolvedCache(boolean ignoreUnresolvedCache) {
+        this.ignoreUnresolvedCache = ignoreUnresolvedCache;
+    }
+
+    /**
+     * Use an offline package index. The index is queried before any network lookup.
+     *
+     * @param packageIndex A package index or null
+     */
+    public void setPackageIndex(@Nullable PackageIndex packageIndex) {
+        this.packageIndex = packageIndex;
+    }
+
+    /**
+     * Use another Solr compatible search endpoint instead of maven central, for example a mirror or a local stand-in
+     * for offline tests.
+     *
+     * @param searchUrl The URL of the select handler without query, see {@link #DEFAULT_SEARCH_URL}
+     */
+    public void setSearchUrl(String searchUrl) {
+        this.searchUrl = searchUrl;
     }
 
+    /**
+     * Count resolutions by source and maven central requests in the given metrics.
+     *
+     * @param metrics The run metrics
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Resolves the given package name and blocks until the result is known.
+     *
+     * @param artifactName A package name
+     * @return Returns the dependency or null if the dependency is not required
+     */
     public @Nullable Dependency resolveDependency(String artifactName) {
+        return resolveDependencyAsync(artifactName).join();
+    }
+
+    /**
+     * Resolves the given package name. Cache hits and package rules are resolved immediately, maven central lookups
+     * are performed in the background.
+     *
+     * @param artifactName A package name
+     * @return Returns a future for the dependency. The future value is null if the dependency is not required.
+     */
+    public CompletableFuture<@Nullable Dependency> resolveDependencyAsync(String artifactName) {
         // Lookup cache
         Dependency dependency = dependencyCache.get(artifactName);
+        if (dependency != null) {
+            metrics.increment("resolver.cache");
+            return CompletableFuture.completedFuture(dependency);
+        }
 
-        // Lookup static patterns
-        if (dependency == null) {
-            if (artifactName.contains("org.eclipse.smarthome")) {
-                Dependency dep = null;
-                String artifactNameFragment = artifactName;
-                while (artifactNameFragment != null && dep == null) {
-                    dep = smarthomePackages.get(artifactNameFragment);
-                    int dotIndex = artifactNameFragment.lastIndexOf(".");
-                    if (dotIndex == -1) {
-                        break;
+        // Lookup package rules
+        ResolverRules.Rule rule = rules.match(artifactName);
+        if (rule != null) {
+            switch (rule.getAction()) {
+                case IGNORE:
+                    metrics.increment("resolver.ruleIgnored");
+                    return CompletableFuture.completedFuture(null);
+                case ERROR:
+                    throw new RuntimeException("No dependency rule defined for: " + artifactName);
+                case DEPENDENCY:
+                    Dependency ruleDependency = rule.getDependency(artifactName);
+                    if (ruleDependency != null) {
+                        metrics.increment("resolver.rule");
+                        return CompletableFuture.completedFuture(ruleDependency);
                     }
-                    artifactNameFragment = artifactNameFragment.substring(0, dotIndex);
-                }
-                if (dep == null) {
-                    throw new RuntimeException("A smarthome package is not defined for: " + artifactName);
-                }
-                return dep;
-            } else if (artifactName.contains("org.openhab.binding")) {
-                return new Dependency(artifactName, "org.openhab.binding", "+");
-            } else if (artifactName.contains("org.openhab")) {
-                return new Dependency(artifactName, "org.openhab", "+");
-            } else if (artifactName.contains("org.apache.commons.exec")) {
-                return new Dependency("commons-exec", "org.apache.commons", "+");
-            } else if (artifactName.contains("org.apache.commons")) {
-                String dep = artifactName.split("\\.")[3];
-                return new Dependency("commons-" + dep, "commons-" + dep, "+");
-            } else if (artifactName.contains("com.google.common")) {
-                return new Dependency("guava", "com.google.guava", "+");
-            } else if (artifactName.contains("javax.servlet")) {
-                return new Dependency("javax.servlet-api", "javax.servlet", "+");
-            } else if (artifactName.contains("javax") && !artifactName.contains("jmdns")) {
-                // javax SPI's shouldn't be part of the individual projects dependencies.
-                // Except javax.jmdns which is only implemented by org.jmdns
-                return null;
+                    break;
+                case LOOKUP:
+                    break;
+            }
+        }
+
+        // Lookup the offline package index
+        PackageIndex packageIndex = this.packageIndex;
+        if (packageIndex != null) {
+            Dependency indexed = packageIndex.lookup(artifactName);
+            if (indexed != null) {
+                metrics.increment("resolver.packageIndex");
+                return CompletableFuture.completedFuture(indexed);
             }
         }
 
+        if (!useMavenCentral) {
+            return CompletableFuture.completedFuture(resolveByLookup(artifactName));
+        }
+
+        // Lookup negative cache. Maven central did not know this package recently.
+        if (isKnownUnresolved(artifactName)) {
+            metrics.increment("resolver.unresolvedCache");
+            return CompletableFuture
+                    .completedFuture(Dependency.of(artifactName, guessGroupByName(artifactName), "+"));
+        }
+
+        // Lookup maven central in the background. Join an already running lookup for the same package.
+        CompletableFuture<Dependency> lookup = new CompletableFuture<>();
+        CompletableFuture<Dependency> pendingLookup = pendingLookups.putIfAbsent(artifactName, lookup);
+        if (pendingLookup != null) {
+            metrics.increment("resolver.coalesced");
+            return pendingLookup;
+        }
+        // A lookup might have finished between the cache lookup above and the registration of this lookup
+        dependency = dependencyCache.get(artifactName);
+        if (dependency != null) {
+            metrics.increment("resolver.cache");
+            pendingLookups.remove(artifactName, lookup);
+            lookup.complete(dependency);
+            return lookup;
+        }
+        lookupExecutor.execute(() -> {
+            try {
+                lookup.complete(resolveByLookup(artifactName));
+            } catch (RuntimeException e) {
+                lookup.completeExceptionally(e);
+            } finally {
+                pendingLookups.remove(artifactName, lookup);
+            }
+        });
+        return lookup;
+    }
+
+    /**
+     * Resolves the given package name via maven central if enabled or guesses the coordinates otherwise.
+     * The result is added to the cache.
+     *
+     * @param artifactName A package name
+     * @return Returns the dependency
+     */
+    private Dependency resolveByLookup(String artifactName) {
+        Dependency dependency = null;
+
         // Lookup maven central
-        if (dependency == null && useMavenCentral) {
+        if (useMavenCentral) {
             try {
                 dependency = lookupMavenCentralViaArtifact(artifactName);
                 if (dependency == null) {
                     dependency = lookupMavenCentralViaClassName(artifactName);
                 }
-                if (dependency != null) {
-                    if (resolved % 10 == 0) {
-                        writeCache();
-                    }
+                if (dependency == null) {
+                    // Both queries were answered without a usable result. Remember that.
+                    long now = System.currentTimeMillis();
+                    unresolvedCache.put(artifactName, now);
+                    cacheStore.appendUnresolved(artifactName, now);
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -263,16 +286,71 @@ public class DependencyResolver {
         }
 
         if (dependency == null) {
-            dependency = new Dependency(artifactName, guessGroupByName(artifactName), "+");
+            dependency = Dependency.of(artifactName, guessGroupByName(artifactName), "+");
+            metrics.increment("NOT_RESOLVED".equals(dependency.getGroup()) ? "resolver.notResolved" : "resolver.guess");
+        } else {
+            metrics.increment("resolver.mavenCentral");
         }
 
-        if (!"NOT_RESOLVED".equals(dependency.group)) {
+        if (!"NOT_RESOLVED".equals(dependency.getGroup())) {
             dependencyCache.put(artifactName, dependency);
+            rememberVersions(artifactName, dependency);
+            try {
+                cacheStore.append(artifactName, dependency);
+            } catch (IOException e) {
+                System.err.println("Failed to write dependency cache: " + e.getMessage());
+            }
         }
 
         return dependency;
     }
 
+    private void rememberVersions(String artifactName, Dependency dependency) {
+        knownVersions.computeIfAbsent(versionKey(artifactName, dependency), k -> ConcurrentHashMap.newKeySet())
+                .add(dependency.getVersion());
+    }
+
+    private static String versionKey(String artifactName, Dependency dependency) {
+        return artifactName + " " + dependency.getGroup() + ":" + dependency.getName();
+    }
+
+    /**
+     * Determines the highest known version of a dependency within the given version range. Only versions of the
+     * artifact that are known to contain the package are candidates: The versions the package was resolved to and
+     * the versions of the package index. The latest version of the artifact is not a candidate, the package might
+     * have been moved or removed.
+     *
+     * The range of an Import-Package entry is a range of package versions, the candidates are artifact versions. Both
+     * agree for bundles that version their packages like the bundle itself, which is the common case. Otherwise the
+     * pinned version is merely the highest version matching the numbers of the range.
+     *
+     * @param artifactName The package name the dependency was resolved for
+     * @param dependency The resolved dependency
+     * @param range The version range of the package import
+     * @return Returns the highest matching version or null if no version known to contain the package matches
+     */
+    public @Nullable String pinVersion(String artifactName, Dependency dependency, VersionRange range) {
+        List<String> versions = new ArrayList<>();
+        versions.add(dependency.getVersion());
+        Set<String> known = knownVersions.get(versionKey(artifactName, dependency));
+        if (known != null) {
+            versions.addAll(known);
+        }
+        PackageIndex packageIndex = this.packageIndex;
+        if (packageIndex != null) {
+            versions.addAll(packageIndex.lookupVersions(artifactName, dependency));
+        }
+        return range.highestMatch(versions);
+    }
+
+    private boolean isKnownUnresolved(String artifactName) {
+        if (ignoreUnresolvedCache) {
+            return false;
+        }
+        Long unresolvedSince = unresolvedCache.get(artifactName);
+        return unresolvedSince != null && System.currentTimeMillis() - unresolvedSince < unresolvedCacheTtl;
+    }
+
     private String guessGroupByName(String name) {
         if (!mavenCoordinateGuess) {
             System.err.println("Maven coordinate not resolved for " + name);
@@ -289,23 +367,38 @@ public class DependencyResolver {
     private Dependency lookupMavenCentralViaClassName(String artifactName) throws IOException {
         System.out.println("\tMaven central lookup via class name " + artifactName + ": ");
         return lookupMavenCentral(artifactName,
-                new URL("http://search.maven.org/solrsearch/select?rows=70&q=fc:%22" + artifactName + "%22"));
+                new URL(searchUrl + "?rows=70&q=fc:%22" + artifactName + "%22"));
     }
 
     private Dependency lookupMavenCentralViaArtifact(String artifactName) throws IOException {
         System.out.println("\tMaven central lookup via artifact ID " + artifactName + ": ");
         return lookupMavenCentral(artifactName,
-                new URL("http://search.maven.org/solrsearch/select?rows=10&q=a:%22" + artifactName + "%22"));
+                new URL(searchUrl + "?rows=10&q=a:%22" + artifactName + "%22"));
     }
 
     private Dependency lookupMavenCentral(String artifactName, URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        long started = System.nanoTime();
+        metrics.increment("http.requests");
+        try {
+            return lookupMavenCentral(artifactName, (HttpURLConnection) url.openConnection());
+        } catch (IOException e) {
+            metrics.increment("http.errors");
+            throw e;
+        } finally {
+            metrics.recordLatency("http.latency", System.nanoTime() - started);
+        }
+    }
+
+    private Dependency lookupMavenCentral(String artifactName, HttpURLConnection urlConnection) throws IOException {
         int code = urlConnection.getResponseCode();
-        if (code != 200) {
+        if (code == 404) {
             System.out.println("\t--not resolved (404)--");
             return null;
+        } else if (code != 200) {
+            // Not an answer to the query, the lookup must not be remembered as unresolvable
+            urlConnection.disconnect();
+            throw new IOException("Maven central lookup failed with HTTP code " + code);
         }
-        ++resolved;
         try (InputStream in = new BufferedInputStream(urlConnection.getInputStream())) {
             Gson gson = new Gson();
             MavenCentralLookup result = gson.fromJson(new InputStreamReader(in), MavenCentralLookup.class);
@@ -315,24 +408,12 @@ public class DependencyResolver {
             }
             if (result.response.numFound == 1) {
                 MavenCentralLookupDoc doc = result.response.docs[0];
-                Dependency d = new Dependency(doc.a, doc.g, doc.v);
+                Dependency d = Dependency.of(doc.a, doc.g, doc.v);
                 System.out.println("\t" + d.toString());
                 return d;
             } else {
-                // Use a stream over potential dependencies
-                Stream<MavenCentralLookupDoc> stream = Stream.of(result.response.docs)
-                        // Filter "android" and Google webtoolkit specific packages
-                        .filter(doc -> !doc.a.contains("-android") && !doc.a.contains("-gwt"))
-                        .filter(DependencyResolver::filterByTags) // Filter "android" packages
-                        // .filter(doc -> doc.timestamp > oldestArchive) // Filter too old packages
-                        .sorted(DependencyResolver::compareVersion) // sort by version
-                        // sort by longest matching substring between artifactID<-->group
-                        .sorted((d1, d2) -> longestSubstr(d2.g, artifactName)
-                                .compareTo(longestSubstr(d1.g, artifactName)));
-
-                // System.out.println("Maven central lookup " + artifactName);
-                // stream.forEach(d -> System.out.append("\t").println(d));
-                Dependency d = stream.limit(1).map(doc -> new Dependency(doc.a, doc.g, doc.v)).findFirst().orElse(null);
+                MavenCentralLookupDoc doc = selectCandidate(artifactName, result.response.docs);
+                Dependency d = doc == null ? null : Dependency.of(doc.a, doc.g, doc.v);
                 System.out.println("\t" + (d == null ? "--not resolved-- (results filtered)" : d.toString()));
                 return d;
             }
@@ -341,11 +422,20 @@ public class DependencyResolver {
         }
     }
 
+    /**
+     * Persists the cache. Resolved dependencies are appended to the cache journal as soon as they are known, this
+     * merges the journal into the cache file if it grew large enough and closes the journal.
+     *
+     * @throws IOException If the cache could not be written
+     */
     public void writeCache() throws IOException {
-        try (FileWriter fileWriter = new FileWriter(cacheFile.toFile())) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(dependencyCache, fileWriter);
+        if (cacheStore.needsCompaction()) {
+            // Expired negative entries are dropped
+            long now = System.currentTimeMillis();
+            unresolvedCache.values().removeIf(unresolvedSince -> now - unresolvedSince >= unresolvedCacheTtl);
+            cacheStore.compact(dependencyCache, unresolvedCache);
         }
+        cacheStore.close();
     }
 
     /**
@@ -362,11 +452,47 @@ public class DependencyResolver {
                 .noneMatch(s -> "spam".equals(s) || "temp".equals(s) || "fixes".equals(s) || "temporary".equals(s));
     }
 
-    public static int compareVersion(MavenCentralLookupDoc subject, MavenCentralLookupDoc argument) {
-        return new ComparableVersion(subject.getVersion()).compareTo(new ComparableVersion(argument.getVersion()));
+    /**
+     * Selects the best maven central candidate for a package name. Each candidate is scored once:
+     * The longest matching substring between group and package name wins, of equally scored candidates the lowest
+     * version and then the first one of the response wins.
+     *
+     * @param artifactName A package name
+     * @param docs The maven central response documents
+     * @return Returns the best candidate or null if all candidates are filtered
+     */
+    private static @Nullable MavenCentralLookupDoc selectCandidate(String artifactName, MavenCentralLookupDoc[] docs) {
+        MavenCentralLookupDoc best = null;
+        int bestScore = -1;
+        ComparableVersion bestVersion = null;
+        for (MavenCentralLookupDoc doc : docs) {
+            // Filter "android" and Google webtoolkit specific packages
+            if (doc.a.contains("-android") || doc.a.contains("-gwt") || !filterByTags(doc)) {
+                continue;
+            }
+            // doc.timestamp > oldestArchive could filter too old packages
+            int score = longestSubstr(doc.g, artifactName);
+            if (score < bestScore) {
+                continue;
+            }
+            ComparableVersion version = new ComparableVersion(doc.getVersion());
+            if (score > bestScore || version.compareTo(bestVersion) < 0) {
+                best = doc;
+                bestScore = score;
+                bestVersion = version;
+            }
+        }
+        return best;
     }
 
-    public static Integer longestSubstr(String first, String second) {
+    /**
+     * Computes the length of the longest common substring. Only two rows of the dynamic programming table are kept.
+     *
+     * @param first A string
+     * @param second Another string
+     * @return Returns the length of the longest common substring
+     */
+    public static int longestSubstr(String first, String second) {
         if (first == null || second == null || first.length() == 0 || second.length() == 0) {
             return 0;
         }
@@ -374,21 +500,25 @@ public class DependencyResolver {
         int maxLen = 0;
         int fl = first.length();
         int sl = second.length();
-        int[][] table = new int[fl][sl];
+        int[] previous = new int[sl + 1];
+        int[] current = new int[sl + 1];
 
         for (int i = 0; i < fl; i++) {
+            char c = first.charAt(i);
             for (int j = 0; j < sl; j++) {
-                if (first.charAt(i) == second.charAt(j)) {
-                    if (i == 0 || j == 0) {
-                        table[i][j] = 1;
-                    } else {
-                        table[i][j] = table[i - 1][j - 1] + 1;
-                    }
-                    if (table[i][j] > maxLen) {
-                        maxLen = table[i][j];
+                if (c == second.charAt(j)) {
+                    int len = previous[j] + 1;
+                    current[j + 1] = len;
+                    if (len > maxLen) {
+                        maxLen = len;
                     }
+                } else {
+                    current[j + 1] = 0;
                 }
             }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
         }
         return maxLen;
     }
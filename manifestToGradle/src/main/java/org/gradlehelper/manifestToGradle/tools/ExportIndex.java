@@ -0,0 +1,129 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Index of the packages that are exported by the bundles of the repository. Imports of these packages are
+ * satisfied by the exporting project, not by a maven artifact.
+ *
+ * The gradle project path of a bundle is its directory relative to the repository root with ':' as separator, the
+ * same path the generated settings.gradle includes.
+ */
+public class ExportIndex {
+    private final Map<String, ProjectDependency> exports = new HashMap<>();
+
+    /**
+     * Reads the Export-Package headers of the given manifests. The manifests are read in parallel. If several
+     * bundles export the same package, the first bundle in the given order wins.
+     *
+     * @param root The repository root directory
+     * @param manifestFiles The META-INF/MANIFEST.MF files of the bundles
+     * @return Returns the index
+     */
+    public static ExportIndex build(Path root, List<Path> manifestFiles) {
+        List<List<String>> exportedPackages = manifestFiles.parallelStream().map(ExportIndex::readExports)
+                .collect(Collectors.toList());
+
+        ExportIndex index = new ExportIndex();
+        for (int i = 0; i < manifestFiles.size(); ++i) {
+            Path projectDir = manifestFiles.get(i).getParent().getParent();
+            ProjectDependency project = new ProjectDependency(projectPath(root, projectDir));
+            for (String packageName : exportedPackages.get(i)) {
+                ProjectDependency existing = index.exports.putIfAbsent(packageName, project);
+                if (existing != null && !existing.equals(project)) {
+                    System.err.println("Package " + packageName + " is exported by " + existing.getPath() + " and "
+                            + project.getPath() + ", use " + existing.getPath());
+                }
+            }
+        }
+        return index;
+    }
+
+    private static List<String> readExports(Path manifestFile) {
+        try (InputStream in = Files.newInputStream(manifestFile)) {
+            return ManifestHeader.parsePaths(new Manifest(in).getMainAttributes().getValue("Export-Package"));
+        } catch (IOException e) {
+            System.err.println("Failed to read exports of " + manifestFile + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @param root The repository root directory
+     * @param projectDir A project directory within the repository
+     * @return The gradle project path, for example ":addons:binding:org.openhab.binding.foo"
+     */
+    public static String projectPath(Path root, Path projectDir) {
+        StringBuilder path = new StringBuilder();
+        for (Path segment : root.relativize(projectDir)) {
+            path.append(':').append(segment.toString());
+        }
+        return path.toString();
+    }
+
+    /**
+     * @param packageName A package name
+     * @return Returns the project exporting the package or null
+     */
+    public @Nullable ProjectDependency lookup(String packageName) {
+        return exports.get(packageName);
+    }
+
+    /**
+     * @param project A project of the repository
+     * @return Returns the packages exported by the project
+     */
+    public Set<String> exportsOf(ProjectDependency project) {
+        return exports.entrySet().stream().filter(export -> export.getValue().equals(project))
+                .map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * @param other Another index of the same repository
+     * @return Returns the packages that are exported by another project, or only, in the other index
+     */
+    public Set<String> changedPackages(ExportIndex other) {
+        Set<String> changed = new HashSet<>();
+        exports.forEach((packageName, project) -> {
+            if (!project.equals(other.exports.get(packageName))) {
+                changed.add(packageName);
+            }
+        });
+        other.exports.keySet().stream().filter(packageName -> !exports.containsKey(packageName))
+                .forEach(changed::add);
+        return changed;
+    }
+
+    /**
+     * @return The amount of exported packages
+     */
+    public int size() {
+        return exports.size();
+    }
+
+    /**
+     * Adds all exported packages and their projects to the given hash, in a stable order.
+     *
+     * @param hasher A hasher
+     */
+    public void addTo(ConversionState.Hasher hasher) {
+        for (Map.Entry<String, ProjectDependency> export : new TreeMap<>(exports).entrySet()) {
+            hasher.add(export.getKey()).add(export.getValue().getPath());
+        }
+        hasher.add(String.valueOf(exports.size()));
+    }
+}
@@ -0,0 +1,190 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders the generated gradle files of a bundle, one after another, UTF-8 encoded into a single byte buffer. The
+ * buffer is reused for the next bundle, an emitter is meant to be kept per thread. Call {@link #reset()} before a
+ * bundle, {@link #startFile(Path)} before each file and hand the rendered files to an {@link OutputWriter}
+ * afterwards, see {@link #getFileCount()}, {@link #getFile(int)} and {@link #getContent(int)}.
+ *
+ * Dependencies are ordered by configuration, group and name, ignoring case. The normalized sort key is computed
+ * once per dependency.
+ */
+public class GradleFileEmitter {
+    private byte[] buffer = new byte[16 * 1024];
+    private int size;
+    private final List<Path> files = new ArrayList<>();
+    private int[] fileStarts = new int[8];
+
+    private static class SortedDependency implements Comparable<SortedDependency> {
+        final String key;
+        final Dependency dependency;
+        final String type;
+
+        SortedDependency(Dependency dependency, String type) {
+            this.key = type.toLowerCase(Locale.ROOT) + '\0' + dependency.getGroup().toLowerCase(Locale.ROOT) + '\0'
+                    + dependency.getName().toLowerCase(Locale.ROOT);
+            this.dependency = dependency;
+            this.type = type;
+        }
+
+        @Override
+        public int compareTo(SortedDependency o) {
+            int result = key.compareTo(o.key);
+            // Same coordinates in different case or versions: keep the output stable
+            return result != 0 ? result : dependency.toString().compareTo(o.dependency.toString());
+        }
+    }
+
+    /**
+     * Discards all rendered files. The buffer is kept.
+     */
+    public void reset() {
+        size = 0;
+        files.clear();
+    }
+
+    /**
+     * Starts the next file, the content of the previous one is complete.
+     *
+     * @param file The target file
+     * @return Returns this emitter
+     */
+    public GradleFileEmitter startFile(Path file) {
+        if (files.size() == fileStarts.length) {
+            fileStarts = Arrays.copyOf(fileStarts, fileStarts.length * 2);
+        }
+        fileStarts[files.size()] = size;
+        files.add(file);
+        return this;
+    }
+
+    /**
+     * @return The amount of rendered files
+     */
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * @param index The index of a rendered file
+     * @return The target file
+     */
+    public Path getFile(int index) {
+        return files.get(index);
+    }
+
+    /**
+     * @param index The index of a rendered file
+     * @return A read-only view on the content, valid until the emitter is reset
+     */
+    public ByteBuffer getContent(int index) {
+        int end = index + 1 < files.size() ? fileStarts[index + 1] : size;
+        return ByteBuffer.wrap(buffer, fileStarts[index], end - fileStarts[index]).slice().asReadOnlyBuffer();
+    }
+
+    public GradleFileEmitter append(char c) {
+        if (c >= 0x80) {
+            return append(String.valueOf(c));
+        }
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+        return this;
+    }
+
+    public GradleFileEmitter append(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Rarely needed: Encode the rest of the text
+                return append(text.substring(i).getBytes(StandardCharsets.UTF_8));
+            }
+            buffer[size++] = (byte) c;
+        }
+        return this;
+    }
+
+    public GradleFileEmitter append(byte[] content) {
+        ensureCapacity(content.length);
+        System.arraycopy(content, 0, buffer, size, content.length);
+        size += content.length;
+        return this;
+    }
+
+    /**
+     * Appends one line per dependency, sorted by configuration, group and name. Dependencies with transitive
+     * dependencies are written as module dependencies, with their transitive dependencies sorted the same way.
+     *
+     * @param dependencies Dependencies and their gradle configurations
+     * @return Returns this emitter
+     */
+    public GradleFileEmitter appendDependencies(Map<Dependency, String> dependencies) {
+        SortedDependency[] sorted = new SortedDependency[dependencies.size()];
+        int i = 0;
+        for (Map.Entry<Dependency, String> entry : dependencies.entrySet()) {
+            sorted[i++] = new SortedDependency(entry.getKey(), entry.getValue());
+        }
+        appendSorted(sorted, 1);
+        return this;
+    }
+
+    private void appendSorted(SortedDependency[] sorted, int level) {
+        Arrays.sort(sorted);
+        for (SortedDependency entry : sorted) {
+            appendDependency(entry.dependency, entry.type, level);
+        }
+    }
+
+    private void appendDependency(Dependency dependency, String type, int level) {
+        indent(level);
+        append(type);
+        if (dependency.hasTransitiveDependencies()) {
+            append(" module(\"");
+            appendCoordinates(dependency);
+            append("\") {\n");
+            Collection<Dependency> transitiveDependencies = dependency.getTransitiveDeps();
+            SortedDependency[] sorted = new SortedDependency[transitiveDependencies.size()];
+            int i = 0;
+            for (Dependency transitive : transitiveDependencies) {
+                sorted[i++] = new SortedDependency(transitive, "implementation");
+            }
+            appendSorted(sorted, level + 1);
+            indent(level);
+            append("}\n");
+        } else if (dependency instanceof ProjectDependency) {
+            append(' ').append(dependency.toString()).append('\n');
+        } else {
+            append(" '");
+            appendCoordinates(dependency);
+            append("'\n");
+        }
+    }
+
+    private void appendCoordinates(Dependency dependency) {
+        append(dependency.getGroup()).append(':').append(dependency.getName()).append(':')
+                .append(dependency.getVersion());
+    }
+
+    private void indent(int level) {
+        for (int i = 0; i < level; ++i) {
+            append('\t');
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Single pass tokenizer for OSGi manifest headers like Import-Package and Export-Package:
+ *
+ * <pre>
+ * header    ::= clause ( ',' clause )*
+ * clause    ::= path ( ';' path )* ( ';' parameter )*
+ * parameter ::= directive | attribute
+ * directive ::= name ':=' argument
+ * attribute ::= name ( ':' type )? '=' argument
+ * argument  ::= token | quoted-string
+ * </pre>
+ *
+ * Quoted arguments may contain separators, for example version="[1.0,2.0)". Only the paths, names and values are
+ * copied out of the header string, attribute and directive maps are only created for clauses that have some.
+ *
+ * The tokenizer never fails, a malformed header of a single bundle must not abort the conversion. An unterminated
+ * quoted string runs to the end of the clause.
+ */
+public class ManifestHeader {
+    /**
+     * A clause of a manifest header: One or more paths, for example package names, sharing the same parameters.
+     */
+    public static class Clause {
+        private final List<String> paths = new ArrayList<>(1);
+        private @Nullable Map<String, String> attributes;
+        private @Nullable Map<String, String> directives;
+
+        /**
+         * @return The paths of this clause, for example the package names
+         */
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        /**
+         * @param name An attribute name, like "version"
+         * @return Returns the unquoted attribute value or null
+         */
+        public @Nullable String getAttribute(String name) {
+            Map<String, String> attributes = this.attributes;
+            return attributes == null ? null : attributes.get(name);
+        }
+
+        /**
+         * @param name A directive name, like "resolution"
+         * @return Returns the unquoted directive value or null
+         */
+        public @Nullable String getDirective(String name) {
+            Map<String, String> directives = this.directives;
+            return directives == null ? null : directives.get(name);
+        }
+
+        public Map<String, String> getAttributes() {
+            Map<String, String> attributes = this.attributes;
+            return attributes == null ? Collections.emptyMap() : attributes;
+        }
+
+        public Map<String, String> getDirectives() {
+            Map<String, String> directives = this.directives;
+            return directives == null ? Collections.emptyMap() : directives;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(";", paths) + (attributes == null ? "" : ";" + attributes)
+                    + (directives == null ? "" : ";" + directives);
+        }
+    }
+
+    private final String header;
+    private final int length;
+    private int pos = 0;
+
+    private ManifestHeader(String header) {
+        this.header = header;
+        this.length = header.length();
+    }
+
+    /**
+     * Tokenizes the given manifest header value.
+     *
+     * @param header A header value, for example of Import-Package. May be null.
+     * @return Returns the clauses of the header in order of appearance
+     */
+    public static List<Clause> parse(@Nullable String header) {
+        if (header == null) {
+            return Collections.emptyList();
+        }
+        return new ManifestHeader(header).parseClauses();
+    }
+
+    /**
+     * Convenience method that returns the paths of all clauses of the given header.
+     *
+     * @param header A header value, for example of Export-Package. May be null.
+     * @return Returns all paths, for example package names, in order of appearance
+     */
+    public static List<String> parsePaths(@Nullable String header) {
+        List<String> paths = new ArrayList<>();
+        for (Clause clause : parse(header)) {
+            paths.addAll(clause.paths);
+        }
+        return paths;
+    }
+
+    private List<Clause> parseClauses() {
+        List<Clause> clauses = new ArrayList<>();
+        while (pos < length) {
+            Clause clause = parseClause();
+            if (!clause.paths.isEmpty()) {
+                clauses.add(clause);
+            }
+            if (pos < length && header.charAt(pos) == ',') {
+                ++pos;
+            }
+        }
+        return clauses;
+    }
+
+    private Clause parseClause() {
+        Clause clause = new Clause();
+        while (pos < length) {
+            skipWhitespace();
+            int start = pos;
+            while (pos < length && !isNameEnd(header.charAt(pos))) {
+                ++pos;
+            }
+            int end = trimEnd(start, pos);
+            char c = pos < length ? header.charAt(pos) : ',';
+            if (c == ':' && pos + 1 < length && header.charAt(pos + 1) == '=') {
+                // Directive
+                pos += 2;
+                String value = parseArgument();
+                if (end > start) {
+                    Map<String, String> directives = clause.directives;
+                    if (directives == null) {
+                        directives = new HashMap<>(4);
+                        clause.directives = directives;
+                    }
+                    directives.put(header.substring(start, end), value);
+                }
+            } else if (c == ':' || c == '=') {
+                // Attribute, the optional type like in version:Version="1.0" is skipped
+                while (pos < length && header.charAt(pos) != '=' && !isClauseEnd(header.charAt(pos))) {
+                    ++pos;
+                }
+                if (pos < length && header.charAt(pos) == '=') {
+                    ++pos;
+                    String value = parseArgument();
+                    if (end > start) {
+                        Map<String, String> attributes = clause.attributes;
+                        if (attributes == null) {
+                            attributes = new HashMap<>(4);
+                            clause.attributes = attributes;
+                        }
+                        attributes.put(header.substring(start, end), value);
+                    }
+                }
+            } else if (end > start) {
+                clause.paths.add(header.substring(start, end));
+            }
+
+            // Expect the next parameter or the end of the clause
+            skipWhitespace();
+            if (pos >= length || header.charAt(pos) == ',') {
+                break;
+            }
+            if (header.charAt(pos) == ';') {
+                ++pos;
+            } else {
+                // Unexpected characters after an argument: Skip to the next separator
+                while (pos < length && !isClauseEnd(header.charAt(pos))) {
+                    ++pos;
+                }
+            }
+        }
+        return clause;
+    }
+
+    /**
+     * Parses an unquoted or quoted argument. Backslash escapes within quotes are resolved. An unterminated quoted
+     * argument is taken as is up to the end of the clause.
+     */
+    private String parseArgument() {
+        skipWhitespace();
+        if (pos < length && header.charAt(pos) == '"') {
+            int quoted = ++pos;
+            int start = quoted;
+            StringBuilder escaped = null;
+            while (pos < length) {
+                char c = header.charAt(pos);
+                if (c == '"') {
+                    String value = escaped == null ? header.substring(start, pos)
+                            : escaped.append(header, start, pos).toString();
+                    ++pos;
+                    return value;
+                }
+                if (c == '\\' && pos + 1 < length) {
+                    if (escaped == null) {
+                        escaped = new StringBuilder();
+                    }
+                    escaped.append(header, start, pos);
+                    start = ++pos;
+                }
+                ++pos;
+            }
+            start = quoted;
+            pos = start;
+            while (pos < length && header.charAt(pos) != ',') {
+                ++pos;
+            }
+            return header.substring(start, trimEnd(start, pos));
+        }
+        int start = pos;
+        while (pos < length && !isClauseEnd(header.charAt(pos))) {
+            ++pos;
+        }
+        return header.substring(start, trimEnd(start, pos));
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && Character.isWhitespace(header.charAt(pos))) {
+            ++pos;
+        }
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && Character.isWhitespace(header.charAt(end - 1))) {
+            --end;
+        }
+        return end;
+    }
+
+    private static boolean isNameEnd(char c) {
+        return c == ';' || c == ',' || c == '=' || c == ':';
+    }
+
+    private static boolean isClauseEnd(char c) {
+        return c == ';' || c == ',';
+    }
+}
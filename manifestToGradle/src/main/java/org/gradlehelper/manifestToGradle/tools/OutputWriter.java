@@ -0,0 +1,136 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes generated files only if their content changed. Unchanged files keep their modification time, so gradle
+ * up-to-date checks and IDE indexes are not invalidated.
+ *
+ * The content is written to a temporary file next to the target and moved into place, a crash never leaves a
+ * truncated file behind. The writer is thread-safe and counts written and unchanged files.
+ */
+public class OutputWriter {
+    private final AtomicInteger changedFiles = new AtomicInteger();
+    private final AtomicInteger unchangedFiles = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Writes the given content if it differs from the existing file.
+     *
+     * @param file The target file
+     * @param content The new content
+     * @return Returns true if the file was written
+     * @throws IOException If the file could not be read or written
+     */
+    public boolean write(Path file, byte[] content) throws IOException {
+        return write(file, ByteBuffer.wrap(content));
+    }
+
+    /**
+     * Writes the remaining content of the given buffer if it differs from the existing file. The position of the
+     * buffer is not changed. The existing file is compared and the new one written with file channels.
+     *
+     * @param file The target file
+     * @param content The new content
+     * @return Returns true if the file was written
+     * @throws IOException If the file could not be read or written
+     */
+    public boolean write(Path file, ByteBuffer content) throws IOException {
+        int length = content.remaining();
+        if (Files.isRegularFile(file) && Files.size(file) == length && hasContent(file, content)) {
+            unchangedFiles.incrementAndGet();
+            return false;
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer remaining = content.duplicate();
+            while (remaining.hasRemaining()) {
+                channel.write(remaining);
+            }
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        changedFiles.incrementAndGet();
+        bytesWritten.addAndGet(length);
+        return true;
+    }
+
+    private static boolean hasContent(Path file, ByteBuffer content) throws IOException {
+        ByteBuffer existing = ByteBuffer.allocate(content.remaining());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (existing.hasRemaining() && channel.read(existing) != -1) {
+                // Read until the buffer is full
+            }
+        }
+        existing.flip();
+        return existing.equals(content);
+    }
+
+    /**
+     * Writes the given text, UTF-8 encoded, if it differs from the existing file.
+     *
+     * @param file The target file
+     * @param content The new content
+     * @return Returns true if the file was written
+     * @throws IOException If the file could not be read or written
+     */
+    public boolean write(Path file, CharSequence content) throws IOException {
+        return write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the remaining content of the given stream if it differs from the existing file. The stream is not
+     * closed.
+     *
+     * @param file The target file
+     * @param in The new content
+     * @return Returns true if the file was written
+     * @throws IOException If the stream could not be read or the file could not be read or written
+     */
+    public boolean write(Path file, InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        return write(file, content.toByteArray());
+    }
+
+    /**
+     * @return The amount of files that were written
+     */
+    public int getChangedFiles() {
+        return changedFiles.get();
+    }
+
+    /**
+     * @return The amount of files that already had the generated content
+     */
+    public int getUnchangedFiles() {
+        return unchangedFiles.get();
+    }
+
+    /**
+     * @return The size of all written files in bytes
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
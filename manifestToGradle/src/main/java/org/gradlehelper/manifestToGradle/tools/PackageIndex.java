@@ -0,0 +1,368 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Offline package name to maven coordinates index, created out of a local maven repository like ~/.m2/repository.
+ *
+ * Only the zip central directory of each jar is read to find the contained packages. The index is stored in a compact
+ * binary file that is memory mapped for lookups. Entries are sorted by package name and looked up by binary search:
+ *
+ * <pre>
+ * int magic, int count, int jar count, long newest jar modification time, int[count] entry offsets
+ * entry: short length, package name (UTF-8), short length, "group:artifact:version1,version2,..." (UTF-8)
+ * </pre>
+ *
+ * Versions are sorted from the highest to the lowest version. The jar count and the newest modification time
+ * describe the state of the repository the index was built from, see {@link #update(Path, Path, boolean)}.
+ */
+public class PackageIndex {
+    private static final int MAGIC = 0x504b4932; // "PKI2"
+    private static final int HEADER_SIZE = 20;
+    // Limits the size of an entry. Only the highest versions are kept.
+    private static final int MAX_VERSIONS = 100;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private static class Artifact {
+        final String group;
+        final String name;
+        final Set<String> versions = new HashSet<>();
+
+        Artifact(String group, String name) {
+            this.group = group;
+            this.name = name;
+        }
+    }
+
+    private PackageIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a package index file");
+        }
+        this.count = buffer.getInt(4);
+    }
+
+    /**
+     * Memory maps an existing index file.
+     *
+     * @param indexFile The index file, created by {@link #build(Path, Path)}
+     * @return Returns the index
+     * @throws IOException If the file could not be mapped or is not an index file
+     */
+    public static PackageIndex open(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            return new PackageIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The amount of packages in this index
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Looks up the artifact that provides the given package.
+     *
+     * @param packageName A package name
+     * @return Returns the dependency with the highest known version or null if the package is not known
+     */
+    public @Nullable Dependency lookup(String packageName) {
+        int entry = find(packageName.getBytes(StandardCharsets.UTF_8));
+        if (entry == -1) {
+            return null;
+        }
+        String[] coordinates = readCoordinates(entry).split(":");
+        String[] versions = coordinates[2].split(",");
+        return Dependency.of(coordinates[1], coordinates[0], versions[0]);
+    }
+
+    /**
+     * Returns all known versions of the given artifact, if it is the artifact that provides the given package.
+     *
+     * @param packageName A package name
+     * @param dependency The dependency that provides the package
+     * @return Returns the versions from the highest to the lowest version. The list is empty if the package is not
+     *         known or provided by another artifact.
+     */
+    public List<String> lookupVersions(String packageName, Dependency dependency) {
+        int entry = find(packageName.getBytes(StandardCharsets.UTF_8));
+        if (entry == -1) {
+            return Collections.emptyList();
+        }
+        String[] coordinates = readCoordinates(entry).split(":");
+        if (!coordinates[0].equals(dependency.getGroup()) || !coordinates[1].equals(dependency.getName())) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(coordinates[2].split(","));
+    }
+
+    /**
+     * Binary search for the given package name.
+     *
+     * @return Returns the offset of the coordinates of the entry or -1
+     */
+    private int find(byte[] packageName) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = buffer.getInt(HEADER_SIZE + mid * 4);
+            int length = buffer.getShort(offset) & 0xffff;
+            int cmp = compare(offset + 2, length, packageName);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return offset + 2 + length;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int offset, int length, byte[] other) {
+        int n = Math.min(length, other.length);
+        for (int i = 0; i < n; ++i) {
+            int cmp = (buffer.get(offset + i) & 0xff) - (other[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - other.length;
+    }
+
+    private String readCoordinates(int offset) {
+        int length = buffer.getShort(offset) & 0xffff;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scans all jars of a local maven repository and writes a new index file.
+     *
+     * @param repository A maven repository directory, for example ~/.m2/repository
+     * @param indexFile The index file. An existing file is replaced.
+     * @return Returns the amount of indexed packages
+     * @throws IOException If the repository could not be read or the index could not be written
+     */
+    public static int build(Path repository, Path indexFile) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        long newestJar = findJars(repository, jars);
+        return build(repository, jars, newestJar, indexFile);
+    }
+
+    /**
+     * Builds the index if the index file is missing, has an older format or was built from another state of the
+     * repository: The amount of jars or the newest modification time of a jar changed. Only the file attributes of
+     * the repository are read to decide this, the jars are only opened if the index is built.
+     *
+     * @param repository A maven repository directory, for example ~/.m2/repository
+     * @param indexFile The index file
+     * @param rebuild Build the index even if it is up to date
+     * @return Returns the amount of indexed packages or -1 if the existing index is up to date
+     * @throws IOException If the repository could not be read or the index could not be written
+     */
+    public static int update(Path repository, Path indexFile, boolean rebuild) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        long newestJar = findJars(repository, jars);
+        if (!rebuild && Files.isRegularFile(indexFile)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                while (header.hasRemaining() && channel.read(header) != -1) {
+                    // Read until the header is complete
+                }
+            }
+            if (!header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(8) == jars.size()
+                    && header.getLong(12) == newestJar) {
+                return -1;
+            }
+        }
+        return build(repository, jars, newestJar, indexFile);
+    }
+
+    /**
+     * @return The newest modification time of the found jars
+     */
+    private static long findJars(Path repository, List<Path> jars) throws IOException {
+        long[] newestJar = { 0 };
+        try (Stream<Path> files = Files.find(repository, Integer.MAX_VALUE, (filePath, fileAttr) -> {
+            if (fileAttr.isRegularFile() && filePath.toString().endsWith(".jar")) {
+                newestJar[0] = Math.max(newestJar[0], fileAttr.lastModifiedTime().toMillis());
+                return true;
+            }
+            return false;
+        })) {
+            files.forEachOrdered(jars::add);
+        }
+        return newestJar[0];
+    }
+
+    private static int build(Path repository, List<Path> jars, long newestJar, Path indexFile) throws IOException {
+
+        // Package -> artifacts that contain the package. Jars are read in parallel.
+        Map<String, Map<String, Artifact>> packages = new HashMap<>();
+        jars.parallelStream().forEach(jar -> {
+            Artifact artifact = artifactByPath(repository, jar);
+            if (artifact == null) {
+                return;
+            }
+            Set<String> jarPackages = readPackages(jar);
+            synchronized (packages) {
+                for (String packageName : jarPackages) {
+                    Artifact known = packages.computeIfAbsent(packageName, k -> new HashMap<>())
+                            .computeIfAbsent(artifact.group + ":" + artifact.name, k -> artifact);
+                    known.versions.addAll(artifact.versions);
+                }
+            }
+        });
+
+        // Sorted by the UTF-8 bytes of the package name, the binary search compares bytes
+        TreeMap<byte[], String> entries = new TreeMap<>(PackageIndex::compareBytes);
+        for (Map.Entry<String, Map<String, Artifact>> entry : packages.entrySet()) {
+            Artifact artifact = selectArtifact(entry.getKey(), entry.getValue().values());
+            List<String> versions = new ArrayList<>(artifact.versions);
+            versions.sort((v1, v2) -> new ComparableVersion(v2).compareTo(new ComparableVersion(v1)));
+            if (versions.size() > MAX_VERSIONS) {
+                versions = versions.subList(0, MAX_VERSIONS);
+            }
+            entries.put(entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    artifact.group + ":" + artifact.name + ":" + String.join(",", versions));
+        }
+
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(tempFile);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            out.writeInt(jars.size());
+            out.writeLong(newestJar);
+            int offset = HEADER_SIZE + entries.size() * 4;
+            List<byte[]> coordinates = new ArrayList<>(entries.size());
+            for (Map.Entry<byte[], String> entry : entries.entrySet()) {
+                byte[] coordinate = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                coordinates.add(coordinate);
+                out.writeInt(offset);
+                offset += 4 + entry.getKey().length + coordinate.length;
+            }
+            int i = 0;
+            for (byte[] packageName : entries.keySet()) {
+                byte[] coordinate = coordinates.get(i++);
+                out.writeShort(packageName.length);
+                out.write(packageName);
+                out.writeShort(coordinate.length);
+                out.write(coordinate);
+            }
+        }
+        try {
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return entries.size();
+    }
+
+    /**
+     * If more than one artifact contains a package, prefer the artifact with the group that is most similar to the
+     * package name and then the one with more versions.
+     */
+    private static Artifact selectArtifact(String packageName, Iterable<Artifact> artifacts) {
+        Artifact selected = null;
+        int selectedScore = -1;
+        for (Artifact artifact : artifacts) {
+            int score = DependencyResolver.longestSubstr(artifact.group, packageName);
+            if (selected == null || score > selectedScore
+                    || (score == selectedScore && artifact.versions.size() > selected.versions.size())) {
+                selected = artifact;
+                selectedScore = score;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Derive the maven coordinates from the repository layout: group/path/artifact/version/artifact-version.jar.
+     * Jars with a classifier (sources, javadoc, tests, ...) are ignored.
+     */
+    private static @Nullable Artifact artifactByPath(Path repository, Path jar) {
+        Path relative = repository.relativize(jar);
+        int n = relative.getNameCount();
+        if (n < 4) {
+            return null;
+        }
+        String version = relative.getName(n - 2).toString();
+        String name = relative.getName(n - 3).toString();
+        if (!relative.getFileName().toString().equals(name + "-" + version + ".jar")) {
+            return null;
+        }
+        String group = relative.subpath(0, n - 3).toString().replace(relative.getFileSystem().getSeparator(), ".");
+        Artifact artifact = new Artifact(group, name);
+        artifact.versions.add(version);
+        return artifact;
+    }
+
+    /**
+     * Reads the packages of all classes of the given jar. Only the zip central directory is read.
+     */
+    private static Set<String> readPackages(Path jar) {
+        Set<String> packages = new HashSet<>();
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                int slash = name.lastIndexOf('/');
+                if (slash > 0 && name.endsWith(".class") && !name.startsWith("META-INF/")) {
+                    packages.add(name.substring(0, slash).replace('/', '.'));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read " + jar + ": " + e.getMessage());
+            return Collections.emptySet();
+        }
+        return packages;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; ++i) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
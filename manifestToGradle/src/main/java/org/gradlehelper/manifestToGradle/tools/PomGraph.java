@@ -0,0 +1,380 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Transitive dependencies of artifacts, read from the POMs of a local maven repository like ~/.m2/repository. No
+ * network access is performed, artifacts without a local POM have no transitive dependencies.
+ *
+ * The graph is shared by all bundles and thread-safe. Each POM is parsed once per run. The dependencies of a POM are
+ * computed like maven does, with some simplifications:
+ * <ul>
+ * <li>Parent POMs are looked up in the repository only, relative paths are ignored</li>
+ * <li>Properties, dependencies and dependency management are inherited from the parents. Dependency management
+ * imports (BOMs) are supported.</li>
+ * <li>Only "compile" and "runtime" dependencies that are not optional and not of type "pom" are transitive. The
+ * scope is kept, see {@link Dependency#isRuntimeDependency(Dependency)}. The dependencies of a runtime dependency
+ * are only needed at runtime as well, regardless of their own scope.</li>
+ * <li>Exclusions are not applied. The graph is shared and does not depend on the path to an artifact.</li>
+ * <li>"+", empty versions and version ranges resolve to the highest version within the repository</li>
+ * </ul>
+ */
+public class PomGraph {
+    // Limits the parent and import chains of broken repositories
+    private static final int MAX_DEPTH = 20;
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final Path repository;
+    private final RunMetrics metrics;
+    private final Map<String, CompletableFuture<@Nullable Pom>> poms = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> versions = new ConcurrentHashMap<>();
+    private final Map<String, Dependency> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * The effective content of a POM that is required to compute transitive dependencies.
+     */
+    private static class Pom {
+        final Map<String, String> properties = new HashMap<>();
+        // "group:artifact" -> managed dependency, already interpolated
+        final Map<String, org.apache.maven.model.Dependency> managed = new HashMap<>();
+        // "group:artifact" -> dependency, already interpolated and completed by the managed version and scope
+        final Map<String, org.apache.maven.model.Dependency> dependencies = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param repository The local maven repository directory
+     * @param metrics Counts parsed and missing POMs
+     */
+    public PomGraph(Path repository, RunMetrics metrics) {
+        this.repository = repository;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns a copy of the given dependency with the transitive dependencies of its POM. The dependency graph is
+     * walked in parallel, level by level, before the result is assembled.
+     *
+     * @param dependency A dependency. Its version may be "+" or a version range.
+     * @return Returns the copy, or the given dependency if its POM is not within the repository
+     */
+    public Dependency withTransitiveDependencies(Dependency dependency) {
+        String version = resolveVersion(dependency.getGroup(), dependency.getName(), dependency.getVersion());
+        if (version == null) {
+            return dependency;
+        }
+        String root = coordinates(dependency.getGroup(), dependency.getName(), version);
+        if (load(root) == null) {
+            return dependency;
+        }
+
+        // Load all POMs of the graph, each level in parallel
+        Set<String> seen = new HashSet<>();
+        seen.add(root);
+        List<String> level = Collections.singletonList(root);
+        while (!level.isEmpty()) {
+            List<String> next = level.parallelStream()
+                    .flatMap(coordinates -> children(coordinates).keySet().stream()).collect(Collectors.toList());
+            level = new ArrayList<>();
+            for (String coordinates : next) {
+                if (seen.add(coordinates)) {
+                    level.add(coordinates);
+                }
+            }
+        }
+
+        Map<String, Integer> path = new HashMap<>();
+        path.put(root, 0);
+        Dependency node = node(root, path, new int[1]);
+        List<Dependency> compile = new ArrayList<>();
+        List<Dependency> runtime = new ArrayList<>();
+        for (Dependency transitive : node.getTransitiveDeps()) {
+            (node.isRuntimeDependency(transitive) ? runtime : compile).add(transitive);
+        }
+        return dependency.withTransitiveDependencies(compile, runtime);
+    }
+
+    /**
+     * Assembles the dependency of the given coordinates and its transitive dependencies. Edges back to a dependency
+     * on the current path are dropped, so within a cycle the result depends on the path. A node is only shared
+     * between all dependents if it does not depend on the path: If no dependency of it has an edge back to a
+     * dependency above it on the path, its strongly connected component is complete.
+     *
+     * @param path The dependencies on the current path and their depth, this dependency included
+     * @param lowest Returns the lowest depth that the dependency and its dependencies have an edge back to
+     */
+    private Dependency node(String coordinates, Map<String, Integer> path, int[] lowest) {
+        Dependency node = nodes.get(coordinates);
+        if (node != null) {
+            lowest[0] = Integer.MAX_VALUE;
+            return node;
+        }
+        int depth = path.get(coordinates);
+        int low = Integer.MAX_VALUE;
+        List<Dependency> compile = new ArrayList<>();
+        List<Dependency> runtime = new ArrayList<>();
+        for (Map.Entry<String, String> child : children(coordinates).entrySet()) {
+            Integer childDepth = path.putIfAbsent(child.getKey(), depth + 1);
+            if (childDepth != null) {
+                low = Math.min(low, childDepth);
+                continue;
+            }
+            Dependency childNode = node(child.getKey(), path, lowest);
+            path.remove(child.getKey());
+            low = Math.min(low, lowest[0]);
+            ("runtime".equals(child.getValue()) ? runtime : compile).add(childNode);
+        }
+        lowest[0] = low;
+        String[] parts = coordinates.split(":");
+        node = Dependency.of(parts[1], parts[0], parts[2]).withTransitiveDependencies(compile, runtime);
+        if (low < depth) {
+            // Part of a cycle through a dependency above: Complete only for this path
+            return node;
+        }
+        Dependency existing = nodes.putIfAbsent(coordinates, node);
+        return existing != null ? existing : node;
+    }
+
+    /**
+     * @return The coordinates of the transitive dependencies of the given artifact with resolved versions and
+     *         their scopes, "compile" or "runtime"
+     */
+    private Map<String, String> children(String coordinates) {
+        Pom pom = load(coordinates);
+        if (pom == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> children = new LinkedHashMap<>();
+        for (org.apache.maven.model.Dependency dependency : pom.dependencies.values()) {
+            String scope = dependency.getScope() == null ? "compile" : dependency.getScope();
+            if (!"compile".equals(scope) && !"runtime".equals(scope) || "true".equals(dependency.getOptional())
+                    || "pom".equals(dependency.getType()) || dependency.getGroupId() == null
+                    || dependency.getArtifactId() == null) {
+                continue;
+            }
+            String version = resolveVersion(dependency.getGroupId(), dependency.getArtifactId(),
+                    dependency.getVersion());
+            if (version != null) {
+                children.put(coordinates(dependency.getGroupId(), dependency.getArtifactId(), version), scope);
+            }
+        }
+        return children;
+    }
+
+    private @Nullable Pom load(String coordinates) {
+        return load(coordinates, Collections.emptyList());
+    }
+
+    /**
+     * Returns the effective POM of the given coordinates. Concurrent requests for the same POM wait for the thread
+     * that parses it.
+     *
+     * @param chain The POMs that are parsed by this thread and wait for this POM, their parent or imported POM
+     */
+    private @Nullable Pom load(String coordinates, List<String> chain) {
+        if (chain.contains(coordinates) || chain.size() > MAX_DEPTH) {
+            System.err.println("Ignore POM " + coordinates + ": Cyclic or too long parent chain " + chain);
+            return null;
+        }
+        return memoize(poms, coordinates, () -> {
+            String[] parts = coordinates.split(":");
+            List<String> parseChain = new ArrayList<>(chain);
+            parseChain.add(coordinates);
+            return parse(parts[0], parts[1], parts[2], parseChain);
+        });
+    }
+
+    private static <T> @Nullable T memoize(Map<String, CompletableFuture<@Nullable T>> memo, String key,
+            Supplier<@Nullable T> loader) {
+        CompletableFuture<@Nullable T> future = new CompletableFuture<>();
+        CompletableFuture<@Nullable T> existing = memo.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            future.complete(loader.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future.join();
+    }
+
+    private @Nullable Pom parse(String group, String artifact, String version, List<String> chain) {
+        Path pomFile = repository.resolve(group.replace('.', '/')).resolve(artifact).resolve(version)
+                .resolve(artifact + "-" + version + ".pom");
+        if (!Files.isRegularFile(pomFile)) {
+            metrics.increment("pom.missing");
+            return null;
+        }
+        Model model;
+        try (Reader reader = Files.newBufferedReader(pomFile, StandardCharsets.UTF_8)) {
+            model = new MavenXpp3Reader().read(reader, false);
+        } catch (IOException | XmlPullParserException e) {
+            System.err.println("Failed to read POM " + pomFile + ": " + e.getMessage());
+            return null;
+        }
+        metrics.increment("pom.parsed");
+
+        Pom pom = new Pom();
+        Parent parent = model.getParent();
+        if (parent != null) {
+            Pom parentPom = load(coordinates(parent.getGroupId(), parent.getArtifactId(), parent.getVersion()),
+                    chain);
+            if (parentPom != null) {
+                pom.properties.putAll(parentPom.properties);
+                pom.managed.putAll(parentPom.managed);
+                pom.dependencies.putAll(parentPom.dependencies);
+            }
+            pom.properties.put("project.parent.groupId", parent.getGroupId());
+            pom.properties.put("project.parent.version", parent.getVersion());
+        }
+        pom.properties.putAll(model.getProperties().stringPropertyNames().stream()
+                .collect(Collectors.toMap(name -> name, name -> model.getProperties().getProperty(name))));
+        for (String prefix : new String[] { "project.", "pom.", "" }) {
+            pom.properties.put(prefix + "groupId", group);
+            pom.properties.put(prefix + "artifactId", artifact);
+            pom.properties.put(prefix + "version", version);
+        }
+
+        if (model.getDependencyManagement() != null) {
+            for (org.apache.maven.model.Dependency managed : model.getDependencyManagement().getDependencies()) {
+                org.apache.maven.model.Dependency dependency = interpolate(managed, pom.properties);
+                if ("import".equals(dependency.getScope()) && "pom".equals(dependency.getType())) {
+                    Pom bom = load(coordinates(dependency.getGroupId(), dependency.getArtifactId(),
+                            dependency.getVersion()), chain);
+                    if (bom != null) {
+                        bom.managed.forEach(pom.managed::putIfAbsent);
+                    }
+                } else {
+                    pom.managed.put(dependency.getManagementKey(), dependency);
+                }
+            }
+        }
+
+        for (org.apache.maven.model.Dependency declared : model.getDependencies()) {
+            org.apache.maven.model.Dependency dependency = interpolate(declared, pom.properties);
+            org.apache.maven.model.Dependency managed = pom.managed.get(dependency.getManagementKey());
+            if (managed != null) {
+                if (dependency.getVersion() == null) {
+                    dependency.setVersion(managed.getVersion());
+                }
+                if (dependency.getScope() == null) {
+                    dependency.setScope(managed.getScope());
+                }
+                if (dependency.getOptional() == null) {
+                    dependency.setOptional(managed.getOptional());
+                }
+            }
+            pom.dependencies.put(dependency.getManagementKey(), dependency);
+        }
+        return pom;
+    }
+
+    private static org.apache.maven.model.Dependency interpolate(org.apache.maven.model.Dependency dependency,
+            Map<String, String> properties) {
+        org.apache.maven.model.Dependency copy = dependency.clone();
+        copy.setGroupId(interpolate(dependency.getGroupId(), properties));
+        copy.setArtifactId(interpolate(dependency.getArtifactId(), properties));
+        copy.setVersion(interpolate(dependency.getVersion(), properties));
+        copy.setScope(interpolate(dependency.getScope(), properties));
+        copy.setOptional(interpolate(dependency.getOptional(), properties));
+        return copy;
+    }
+
+    /**
+     * Replaces ${name} expressions. Properties may refer to other properties.
+     */
+    private static @Nullable String interpolate(@Nullable String value, Map<String, String> properties) {
+        for (int i = 0; value != null && value.contains("${") && i < MAX_DEPTH; ++i) {
+            Matcher matcher = PROPERTY.matcher(value);
+            StringBuffer result = new StringBuffer();
+            while (matcher.find()) {
+                String replacement = properties.get(matcher.group(1));
+                matcher.appendReplacement(result,
+                        Matcher.quoteReplacement(replacement != null ? replacement : matcher.group()));
+            }
+            matcher.appendTail(result);
+            if (result.toString().equals(value)) {
+                break;
+            }
+            value = result.toString();
+        }
+        return value;
+    }
+
+    /**
+     * Resolves "+", missing versions and version ranges to the highest matching version within the repository.
+     *
+     * @return Returns the version or null if no version matches
+     */
+    private @Nullable String resolveVersion(String group, String artifact, @Nullable String version) {
+        if (version != null && !version.isEmpty() && !"+".equals(version) && !version.startsWith("[")
+                && !version.startsWith("(")) {
+            return version;
+        }
+        List<String> available = versions.computeIfAbsent(group + ":" + artifact,
+                key -> listVersions(group, artifact));
+        if (available.isEmpty()) {
+            return null;
+        }
+        if (version == null || version.isEmpty() || "+".equals(version)) {
+            return available.get(0);
+        }
+        try {
+            return VersionRange.parse(version).highestMatch(available);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The versions of the artifact with a POM in the repository, from the highest to the lowest version
+     */
+    private List<String> listVersions(String group, String artifact) {
+        Path artifactDir = repository.resolve(group.replace('.', '/')).resolve(artifact);
+        if (!Files.isDirectory(artifactDir)) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(artifactDir)) {
+            for (Path dir : dirs) {
+                String version = dir.getFileName().toString();
+                if (Files.isRegularFile(dir.resolve(artifact + "-" + version + ".pom"))) {
+                    result.add(version);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to list " + artifactDir + ": " + e.getMessage());
+        }
+        result.sort((a, b) -> new ComparableVersion(b).compareTo(new ComparableVersion(a)));
+        return result;
+    }
+
+    private static String coordinates(String group, String artifact, String version) {
+        return group + ":" + artifact + ":" + version;
+    }
+}
@@ -0,0 +1,27 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+/**
+ * A dependency on another project of the same multi-project build, written as project(':path').
+ */
+public class ProjectDependency extends Dependency {
+    public static final String GROUP = "project";
+
+    /**
+     * @param path The gradle project path, for example ":addons:binding:org.openhab.binding.foo"
+     */
+    public ProjectDependency(String path) {
+        super(path, GROUP, "");
+    }
+
+    /**
+     * @return The gradle project path
+     */
+    public String getPath() {
+        return getName();
+    }
+
+    @Override
+    public String toString() {
+        return "project('" + getName() + "')";
+    }
+}
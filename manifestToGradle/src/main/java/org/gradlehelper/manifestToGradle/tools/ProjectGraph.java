@@ -0,0 +1,121 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The dependencies between the bundles of the repository: A bundle depends on the bundles that export its imports.
+ * Gradle cannot build projects that depend on each other, so cycles are broken. The graph is searched depth-first,
+ * in the order of the project paths, and every edge back to a project on the current path is a back edge. Imports
+ * along a back edge are resolved to a maven artifact instead of the project.
+ */
+public class ProjectGraph {
+    // project path -> the project paths it must not depend on
+    private final Map<String, Set<String>> backEdges = new TreeMap<>();
+    private int backEdgeCount;
+
+    private ProjectGraph() {
+    }
+
+    /**
+     * Builds the graph and finds its back edges.
+     *
+     * @param exportIndex The packages exported by the bundles
+     * @param imports The imported packages of the bundles, by project path
+     * @return Returns the graph
+     */
+    public static ProjectGraph build(ExportIndex exportIndex, Map<String, ? extends Collection<String>> imports) {
+        Map<String, Set<String>> edges = new TreeMap<>();
+        imports.forEach((project, packages) -> {
+            Set<String> targets = new TreeSet<>();
+            for (String packageName : packages) {
+                ProjectDependency target = exportIndex.lookup(packageName);
+                if (target != null && !target.getPath().equals(project)) {
+                    targets.add(target.getPath());
+                }
+            }
+            edges.put(project, targets);
+        });
+
+        ProjectGraph graph = new ProjectGraph();
+        Map<String, Boolean> onPath = new HashMap<>();
+        for (String project : edges.keySet()) {
+            graph.visit(project, edges, onPath);
+        }
+        return graph;
+    }
+
+    /**
+     * Visits the project and all projects it depends on. A project is on the path while its dependencies are
+     * visited, and done afterwards.
+     */
+    private void visit(String project, Map<String, Set<String>> edges, Map<String, Boolean> onPath) {
+        if (onPath.putIfAbsent(project, Boolean.TRUE) != null) {
+            return;
+        }
+        for (String target : edges.getOrDefault(project, Collections.emptySet())) {
+            Boolean targetOnPath = onPath.get(target);
+            if (targetOnPath == null) {
+                visit(target, edges, onPath);
+            } else if (targetOnPath) {
+                System.err.println("Dependency of " + project + " on " + target
+                        + " closes a cycle, its imports are resolved to maven artifacts");
+                backEdges.computeIfAbsent(project, k -> new TreeSet<>()).add(target);
+                ++backEdgeCount;
+            }
+        }
+        onPath.put(project, Boolean.FALSE);
+    }
+
+    /**
+     * @param project A project path
+     * @param target The project path of an imported package
+     * @return Returns true if the dependency would close a cycle and must not be a project dependency
+     */
+    public boolean isBackEdge(String project, String target) {
+        return getBackEdges(project).contains(target);
+    }
+
+    /**
+     * @param project A project path
+     * @return The project paths of the imported packages the project must not depend on
+     */
+    public Set<String> getBackEdges(String project) {
+        return Collections.unmodifiableSet(backEdges.getOrDefault(project, Collections.emptySet()));
+    }
+
+    /**
+     * @return The amount of back edges
+     */
+    public int getBackEdgeCount() {
+        return backEdgeCount;
+    }
+
+    /**
+     * @return The back edges as "project -> target", in a stable order
+     */
+    public List<String> getBackEdges() {
+        List<String> result = new ArrayList<>(backEdgeCount);
+        backEdges.forEach((project, targets) -> targets.forEach(target -> result.add(project + " -> " + target)));
+        return result;
+    }
+
+    /**
+     * Adds all back edges to the given hash, in a stable order.
+     *
+     * @param hasher A hasher
+     */
+    public void addTo(ConversionState.Hasher hasher) {
+        for (String backEdge : getBackEdges()) {
+            hasher.add(backEdge);
+        }
+        hasher.add(String.valueOf(backEdgeCount));
+    }
+}
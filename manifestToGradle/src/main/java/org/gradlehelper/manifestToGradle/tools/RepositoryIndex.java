@@ -0,0 +1,310 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Index of all files and directories the conversion stages are interested in. The repository is walked exactly
+ * once and all stages read from this index instead of walking the disk again:
+ * <ul>
+ * <li>META-INF/MANIFEST.MF files and therefore the bundle directories</li>
+ * <li>pom.xml files</li>
+ * <li>".test" project directories with an existing host project sibling and their test source files</li>
+ * <li>the content of "lib" and "libTests" directories</li>
+ * <li>Eclipse project files (".project", "build.properties")</li>
+ * </ul>
+ *
+ * Stages that move files around are expected to report those moves, so that later stages see a consistent index.
+ */
+public class RepositoryIndex {
+    /**
+     * Directory within the input directory that contains test projects which are deleted in the background. It is
+     * not indexed.
+     */
+    public static final String TRASH_DIR = "deleted-test-projects.temp";
+
+    private final List<Path> manifestFiles = new ArrayList<>();
+    private final Set<Path> manifestFileSet = new HashSet<>();
+    private final Set<Path> pomFiles = new HashSet<>();
+    private final List<Path> eclipseFiles = new ArrayList<>();
+    private final List<Path> testProjectDirs = new ArrayList<>();
+    private final Map<Path, List<Path>> testSources = new HashMap<>();
+    private final Map<Path, List<Path>> libraries = new HashMap<>();
+    // Manifests of deleted test projects. The converter still needs the imports of the tests.
+    private final Map<Path, byte[]> deletedTestManifests = new HashMap<>();
+    private int visitedFiles = 0;
+
+    private RepositoryIndex() {
+    }
+
+    /**
+     * Walks the given directory and all subdirectories once and creates the index.
+     *
+     * @param root The repository root directory
+     * @return Returns the index of the repository
+     * @throws IOException If the directory walk failed
+     */
+    public static RepositoryIndex scan(Path root) throws IOException {
+        RepositoryIndex index = new RepositoryIndex();
+        Set<Path> directories = new HashSet<>();
+        // Test project candidates in walk order. Whether the host project exists is only known after the walk.
+        Map<Path, List<Path>> testProjectCandidates = new LinkedHashMap<>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            private Path currentLibDir = null;
+            private List<Path> currentTestSources = null;
+            private Path currentTestSourceDir = null;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path fileName = dir.getFileName();
+                String name = fileName == null ? "" : fileName.toString();
+                if (TRASH_DIR.equals(name) && root.equals(dir.getParent())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directories.add(dir);
+                if (dir.toString().endsWith(".test")) {
+                    testProjectCandidates.put(dir, new ArrayList<>());
+                }
+                if (currentLibDir == null && ("lib".equals(name) || "libTests".equals(name))) {
+                    currentLibDir = dir;
+                    index.libraries.put(dir, new ArrayList<>());
+                }
+                if (currentTestSourceDir == null && "test".equals(name) && dir.getParent() != null
+                        && dir.getParent().getFileName() != null
+                        && "src".equals(dir.getParent().getFileName().toString())) {
+                    currentTestSources = testProjectCandidates.get(dir.getParent().getParent());
+                    if (currentTestSources != null) {
+                        currentTestSourceDir = dir;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                if (dir.equals(currentLibDir)) {
+                    currentLibDir = null;
+                }
+                if (dir.equals(currentTestSourceDir)) {
+                    currentTestSourceDir = null;
+                    currentTestSources = null;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                ++index.visitedFiles;
+                String name = file.getFileName().toString();
+                boolean isRegularFile = attrs.isRegularFile();
+
+                if (isRegularFile && "MANIFEST.MF".equals(name)
+                        && "META-INF".equals(file.getParent().getFileName().toString())) {
+                    index.manifestFiles.add(file);
+                    index.manifestFileSet.add(file);
+                } else if (isRegularFile && "pom.xml".equals(name)) {
+                    index.pomFiles.add(file);
+                } else if (isRegularFile && ".project".equals(name) || "build.properties".equals(name)) {
+                    index.eclipseFiles.add(file);
+                }
+
+                if (isRegularFile && currentLibDir != null) {
+                    index.libraries.get(currentLibDir).add(file);
+                }
+                if (isRegularFile && currentTestSources != null
+                        && (name.endsWith(".java") || name.endsWith(".groovy"))) {
+                    currentTestSources.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (Map.Entry<Path, List<Path>> candidate : testProjectCandidates.entrySet()) {
+            Path testProject = candidate.getKey();
+            Path hostProject = testProject.resolveSibling(testProject.getFileName().toString().replace(".test", ""));
+            if (directories.contains(hostProject)) {
+                index.testProjectDirs.add(testProject);
+                index.testSources.put(testProject, candidate.getValue());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return All META-INF/MANIFEST.MF files in walk order
+     */
+    public List<Path> getManifestFiles() {
+        return Collections.unmodifiableList(manifestFiles);
+    }
+
+    /**
+     * @param projectDir A project directory
+     * @return Returns true if the project directory contains a META-INF/MANIFEST.MF file
+     */
+    public boolean hasManifest(Path projectDir) {
+        return manifestFileSet.contains(projectDir.resolve("META-INF/MANIFEST.MF"));
+    }
+
+    /**
+     * @param projectDir A project directory
+     * @return Returns true if the project directory contains a pom.xml file
+     */
+    public boolean hasPom(Path projectDir) {
+        return pomFiles.contains(projectDir.resolve("pom.xml"));
+    }
+
+    /**
+     * @return All Eclipse project files (".project", "build.properties")
+     */
+    public List<Path> getEclipseFiles() {
+        return Collections.unmodifiableList(eclipseFiles);
+    }
+
+    /**
+     * @return All ".test" project directories that have a host project sibling
+     */
+    public List<Path> getTestProjectDirs() {
+        return Collections.unmodifiableList(testProjectDirs);
+    }
+
+    /**
+     * @param testProject A ".test" project directory
+     * @return Returns all .java and .groovy files within the src/test directory of the given test project
+     */
+    public List<Path> getTestSources(Path testProject) {
+        return Collections.unmodifiableList(testSources.getOrDefault(testProject, Collections.emptyList()));
+    }
+
+    /**
+     * @param libDir A "lib" or "libTests" directory
+     * @return Returns all regular files within the given directory and its subdirectories
+     */
+    public List<Path> getLibraryFiles(Path libDir) {
+        return Collections.unmodifiableList(libraries.getOrDefault(libDir, Collections.emptyList()));
+    }
+
+    /**
+     * @return The amount of files that were visited while creating the index
+     */
+    public int getVisitedFiles() {
+        return visitedFiles;
+    }
+
+    /**
+     * Report that a library directory has been moved.
+     *
+     * @param from The old "lib" or "libTests" directory
+     * @param to The new directory
+     */
+    public void libraryDirectoryMoved(Path from, Path to) {
+        List<Path> files = libraries.remove(from);
+        if (files == null) {
+            return;
+        }
+        List<Path> movedFiles = new ArrayList<>(files.size());
+        for (Path file : files) {
+            movedFiles.add(to.resolve(from.relativize(file)));
+        }
+        libraries.put(to, movedFiles);
+    }
+
+    /**
+     * Reads the pom.xml, the manifest and the library directories of a project again, for example after they changed
+     * on disk.
+     *
+     * @param projectDir A project directory
+     * @throws IOException If a library directory could not be read
+     */
+    public void refreshProject(Path projectDir) throws IOException {
+        Path pomFile = projectDir.resolve("pom.xml");
+        if (Files.isRegularFile(pomFile)) {
+            pomFiles.add(pomFile);
+        } else {
+            pomFiles.remove(pomFile);
+        }
+        Path manifestFile = projectDir.resolve("META-INF/MANIFEST.MF");
+        if (Files.isRegularFile(manifestFile)) {
+            if (manifestFileSet.add(manifestFile)) {
+                manifestFiles.add(manifestFile);
+            }
+        } else if (manifestFileSet.remove(manifestFile)) {
+            manifestFiles.remove(manifestFile);
+        }
+        for (String name : new String[] { "lib", "libTests" }) {
+            Path libDir = projectDir.resolve(name);
+            if (Files.isDirectory(libDir)) {
+                try (Stream<Path> files = Files.walk(libDir)) {
+                    libraries.put(libDir, files.filter(Files::isRegularFile).collect(Collectors.toList()));
+                }
+            } else {
+                libraries.remove(libDir);
+            }
+        }
+    }
+
+    /**
+     * Report that a test project is about to be deleted or moved out of the repository. Its manifest is kept in
+     * memory, see {@link #readTestManifest(Path)}, and the project is no longer a bundle of the index.
+     *
+     * @param testProject A ".test" project directory
+     * @throws IOException If the manifest could not be read
+     */
+    public void testProjectDeleted(Path testProject) throws IOException {
+        Path manifestFile = testProject.resolve("META-INF/MANIFEST.MF");
+        if (manifestFileSet.remove(manifestFile)) {
+            manifestFiles.remove(manifestFile);
+            deletedTestManifests.put(testProject, Files.readAllBytes(manifestFile));
+        }
+        pomFiles.remove(testProject.resolve("pom.xml"));
+    }
+
+    /**
+     * @param testProject A ".test" project directory
+     * @return Returns the content of the manifest of the test project, also if the project has been deleted, or null
+     *         if it has no manifest
+     * @throws IOException If the manifest could not be read
+     */
+    public byte @Nullable [] readTestManifest(Path testProject) throws IOException {
+        byte[] content = deletedTestManifests.get(testProject);
+        if (content != null) {
+            return content;
+        }
+        Path manifestFile = testProject.resolve("META-INF/MANIFEST.MF");
+        return manifestFileSet.contains(manifestFile) ? Files.readAllBytes(manifestFile) : null;
+    }
+
+    /**
+     * Report that a file has been deleted.
+     *
+     * @param file The deleted file
+     */
+    public void fileDeleted(Path file) {
+        for (Path dir = file.getParent(); dir != null; dir = dir.getParent()) {
+            List<Path> files = libraries.get(dir);
+            if (files != null) {
+                files.remove(file);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Package prefix rules of the {@link DependencyResolver}, see resource file "resolverRules.txt" for the rule syntax.
+ *
+ * The rules are compiled into a prefix trie. A lookup is a single scan over the package name and does not allocate,
+ * the rule with the longest prefix that ends at a package segment boundary wins.
+ */
+public class ResolverRules {
+    public enum Action {
+        /** The package is provided by the dependency of the rule */
+        DEPENDENCY,
+        /** The package is not a dependency */
+        IGNORE,
+        /** The package is resolved via the package index or maven central */
+        LOOKUP,
+        /** The package requires a more specific rule */
+        ERROR
+    }
+
+    /**
+     * A compiled rule.
+     */
+    public static class Rule {
+        private final String prefix;
+        private final Action action;
+        // Coordinate templates. The first one is the dependency, the others are transitive dependencies.
+        private final String[][] coordinates;
+        // Pre-built dependency if the coordinates do not contain placeholders
+        private final @Nullable Dependency dependency;
+
+        Rule(String prefix, Action action, String[][] coordinates) {
+            this.prefix = prefix;
+            this.action = action;
+            this.coordinates = coordinates;
+            this.dependency = action == Action.DEPENDENCY && !hasPlaceholders(coordinates) ? apply(prefix) : null;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * Creates the dependency of this rule for the given package name.
+         *
+         * @param packageName A package name that matches this rule
+         * @return Returns the dependency or null if a placeholder could not be replaced, for example a segment index
+         *         that is out of range.
+         */
+        public @Nullable Dependency getDependency(String packageName) {
+            if (dependency != null) {
+                return dependency;
+            }
+            return apply(packageName);
+        }
+
+        private @Nullable Dependency apply(String packageName) {
+            List<Dependency> dependencies = new ArrayList<>();
+            for (String[] coordinate : coordinates) {
+                String group = expand(coordinate[0], packageName);
+                String name = expand(coordinate[1], packageName);
+                String version = expand(coordinate[2], packageName);
+                if (group == null || name == null || version == null) {
+                    return null;
+                }
+                dependencies.add(Dependency.of(name, group, version));
+            }
+            return dependencies.get(0).withTransitiveDependencies(dependencies.subList(1, dependencies.size()));
+        }
+
+        private static boolean hasPlaceholders(String[][] coordinates) {
+            for (String[] coordinate : coordinates) {
+                for (String part : coordinate) {
+                    if (part.indexOf('{') != -1) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Replaces {package} by the package name and {N} by the N-th segment of the package name.
+         */
+        private static @Nullable String expand(String template, String packageName) {
+            int open = template.indexOf('{');
+            if (open == -1) {
+                return template;
+            }
+            StringBuilder result = new StringBuilder();
+            int start = 0;
+            while (open != -1) {
+                int close = template.indexOf('}', open);
+                if (close == -1) {
+                    return null;
+                }
+                result.append(template, start, open);
+                String placeholder = template.substring(open + 1, close);
+                if ("package".equals(placeholder)) {
+                    result.append(packageName);
+                } else {
+                    int segment;
+                    try {
+                        segment = Integer.parseInt(placeholder);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (!appendSegment(result, packageName, segment)) {
+                        return null;
+                    }
+                }
+                start = close + 1;
+                open = template.indexOf('{', start);
+            }
+            result.append(template, start, template.length());
+            return result.toString();
+        }
+
+        private static boolean appendSegment(StringBuilder result, String packageName, int segment) {
+            int begin = 0;
+            for (int i = 0; i < segment; ++i) {
+                begin = packageName.indexOf('.', begin) + 1;
+                if (begin == 0) {
+                    return false;
+                }
+            }
+            int end = packageName.indexOf('.', begin);
+            result.append(packageName, begin, end == -1 ? packageName.length() : end);
+            return true;
+        }
+    }
+
+    /**
+     * A trie node. Children are stored in arrays sorted by their character.
+     */
+    private static class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        @Nullable
+        Rule rule;
+
+        @Nullable
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+
+        Node addChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+            newKeys[index] = c;
+            newChildren[index] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[index];
+        }
+    }
+
+    private final Node root = new Node();
+    private final List<Rule> rules;
+
+    private ResolverRules(List<Rule> rules) {
+        this.rules = rules;
+        for (Rule rule : rules) {
+            Node node = root;
+            for (int i = 0; i < rule.prefix.length(); ++i) {
+                node = node.addChild(rule.prefix.charAt(i));
+            }
+            node.rule = rule;
+        }
+    }
+
+    /**
+     * Parses and compiles rule files. Rules of later files replace rules with the same prefix of earlier files.
+     *
+     * @param readers Rule files
+     * @return Returns the compiled rules
+     * @throws IOException If a file could not be read
+     * @throws IllegalArgumentException If a rule is not valid
+     */
+    public static ResolverRules parse(BufferedReader... readers) throws IOException {
+        Map<String, Rule> rules = new LinkedHashMap<>();
+        for (BufferedReader reader : readers) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Rule rule = parseRule(line);
+                rules.put(rule.prefix, rule);
+            }
+        }
+        return new ResolverRules(new ArrayList<>(rules.values()));
+    }
+
+    private static Rule parseRule(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Resolver rule not valid: " + line);
+        }
+        String prefix = line.substring(0, separator).trim();
+        String target = line.substring(separator + 1).trim();
+        switch (target) {
+            case "ignore":
+                return new Rule(prefix, Action.IGNORE, new String[0][]);
+            case "lookup":
+                return new Rule(prefix, Action.LOOKUP, new String[0][]);
+            case "error":
+                return new Rule(prefix, Action.ERROR, new String[0][]);
+            default:
+                String[] coordinateStrings = target.split("\\|");
+                String[][] coordinates = new String[coordinateStrings.length][];
+                for (int i = 0; i < coordinateStrings.length; ++i) {
+                    coordinates[i] = coordinateStrings[i].trim().split(":");
+                    if (coordinates[i].length != 3) {
+                        throw new IllegalArgumentException("Resolver rule not valid: " + line);
+                    }
+                }
+                return new Rule(prefix, Action.DEPENDENCY, coordinates);
+        }
+    }
+
+    /**
+     * Finds the rule with the longest prefix that matches the given package name. A prefix matches if it is equal to
+     * the package name or followed by a '.' in the package name.
+     *
+     * @param packageName A package name
+     * @return Returns the matching rule or null
+     */
+    public @Nullable Rule match(String packageName) {
+        Rule match = null;
+        Node node = root;
+        int length = packageName.length();
+        for (int i = 0; i < length; ++i) {
+            node = node.child(packageName.charAt(i));
+            if (node == null) {
+                return match;
+            }
+            if (node.rule != null && (i + 1 == length || packageName.charAt(i + 1) == '.')) {
+                match = node.rule;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * @return All rules in the order of definition
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+}
@@ -0,0 +1,152 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Wall time of the pipeline stages, counters and latency histograms of a run. All methods are thread-safe.
+ * The collected values are written as a json report, see CliArguments.metricsOut.
+ *
+ * Counter names are dotted, the first segment names the component, for example "resolver.cache".
+ */
+public class RunMetrics {
+    // Upper bounds of the latency histogram buckets in milliseconds. The last bucket is unbounded.
+    private static final long[] LATENCY_BUCKETS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000 };
+
+    private final long started = System.nanoTime();
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLongArray> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * A pipeline stage.
+     */
+    @FunctionalInterface
+    public interface Stage {
+        void run() throws IOException;
+    }
+
+    /**
+     * A pipeline stage with a result.
+     */
+    @FunctionalInterface
+    public interface StageWithResult<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Runs the given stage and records its wall time.
+     *
+     * @param name The stage name
+     * @param stage The stage
+     * @throws IOException If the stage failed
+     */
+    public void time(String name, Stage stage) throws IOException {
+        measure(name, () -> {
+            stage.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given stage and records its wall time.
+     *
+     * @param name The stage name
+     * @param stage The stage
+     * @return Returns the result of the stage
+     * @throws IOException If the stage failed
+     */
+    public <T> T measure(String name, StageWithResult<T> stage) throws IOException {
+        long stageStarted = System.nanoTime();
+        try {
+            return stage.run();
+        } finally {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stageStarted);
+            synchronized (stageMillis) {
+                stageMillis.merge(name, millis, Long::sum);
+            }
+        }
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long value) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(value);
+    }
+
+    /**
+     * @param counter A counter name
+     * @return The current value of the counter
+     */
+    public long get(String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Records a latency in the given histogram.
+     *
+     * @param histogram The histogram name
+     * @param nanos The latency in nanoseconds
+     */
+    public void recordLatency(String histogram, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+            ++bucket;
+        }
+        histograms.computeIfAbsent(histogram, k -> new AtomicLongArray(LATENCY_BUCKETS.length + 1))
+                .incrementAndGet(bucket);
+    }
+
+    private static class Report {
+        long totalMillis;
+        Map<String, Long> stagesMillis;
+        Map<String, Long> counters = new TreeMap<>();
+        Map<String, Map<String, Long>> histograms = new TreeMap<>();
+    }
+
+    /**
+     * Writes the json report.
+     *
+     * @param file The report file
+     * @throws IOException If the report could not be written
+     */
+    public void write(Path file) throws IOException {
+        Report report = new Report();
+        report.totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        synchronized (stageMillis) {
+            report.stagesMillis = new LinkedHashMap<>(stageMillis);
+        }
+        counters.forEach((name, value) -> report.counters.put(name, value.sum()));
+        histograms.forEach((name, buckets) -> {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length(); ++i) {
+                String label = i < LATENCY_BUCKETS.length ? "<=" + LATENCY_BUCKETS[i] + "ms"
+                        : ">" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms";
+                histogram.put(label, buckets.get(i));
+            }
+            report.histograms.put(name, histogram);
+        });
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            gson.toJson(report, writer);
+        }
+    }
+}
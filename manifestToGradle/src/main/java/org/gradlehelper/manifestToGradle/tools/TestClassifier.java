@@ -0,0 +1,308 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Separates integration tests from unit tests. A test source is an integration test if it contains "OSGiTest" or
+ * if its class extends, directly or via other classes of the same test project, such a class.
+ *
+ * All sources are scanned once and in parallel. The scan works on the raw bytes, "OSGiTest" and java identifiers
+ * are ASCII in practice, and stops at the first "OSGiTest" occurrence. Only sources without it are searched for the
+ * superclass, comments and literals are skipped there. The class name of a source is its file name.
+ *
+ * Sources are read into a heap buffer per scanning thread instead of being mapped. A mapped file cannot be moved or
+ * deleted on Windows until the mapping is garbage collected, and the sources are moved right after the scan.
+ */
+public class TestClassifier {
+    private static final byte[] MARKER = "OSGiTest".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLASS = "class".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EXTENDS = "extends".getBytes(StandardCharsets.US_ASCII);
+    // Reused by the sources scanned on the same thread, grows to the largest of them
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(16 * 1024));
+
+    private static class ScannedSource {
+        final boolean marker;
+        final @Nullable String superclass;
+
+        ScannedSource(boolean marker, @Nullable String superclass) {
+            this.marker = marker;
+            this.superclass = superclass;
+        }
+    }
+
+    private final Map<Path, ScannedSource> scanned = new ConcurrentHashMap<>();
+
+    /**
+     * Scans the given test sources in parallel. Sources that could not be read are reported and are not
+     * classified.
+     *
+     * @param sources Test sources, possibly of several test projects
+     * @return Returns the classifier
+     */
+    public static TestClassifier scan(Collection<Path> sources) {
+        TestClassifier classifier = new TestClassifier();
+        sources.parallelStream().forEach(source -> {
+            try {
+                classifier.scanned.put(source, scanSource(source));
+            } catch (IOException e) {
+                System.err.println("\t\tFailed to read " + source + ": " + e.getMessage());
+            }
+        });
+        return classifier;
+    }
+
+    /**
+     * @param source A test source
+     * @return Returns true if the source was scanned
+     */
+    public boolean isScanned(Path source) {
+        return scanned.containsKey(source);
+    }
+
+    /**
+     * Classifies the sources of one test project. Superclasses are looked up within the given sources only.
+     *
+     * @param projectSources The scanned sources of a test project
+     * @return Returns the integration tests of the given sources
+     */
+    public Set<Path> findIntegrationTests(List<Path> projectSources) {
+        // Class index of the project: class name -> scanned source
+        Map<String, ScannedSource> classes = new HashMap<>();
+        for (Path source : projectSources) {
+            ScannedSource scannedSource = scanned.get(source);
+            if (scannedSource != null) {
+                classes.put(className(source), scannedSource);
+            }
+        }
+
+        Map<String, Boolean> integrationClasses = new HashMap<>();
+        Set<Path> integrationTests = new HashSet<>();
+        for (Path source : projectSources) {
+            if (scanned.containsKey(source) && isIntegrationClass(className(source), classes, integrationClasses)) {
+                integrationTests.add(source);
+            }
+        }
+        return integrationTests;
+    }
+
+    private static boolean isIntegrationClass(String className, Map<String, ScannedSource> classes,
+            Map<String, Boolean> integrationClasses) {
+        Boolean known = integrationClasses.get(className);
+        if (known != null) {
+            return known;
+        }
+        // Guard against cyclic or self references while the chain is followed
+        integrationClasses.put(className, false);
+        ScannedSource source = classes.get(className);
+        boolean integration = false;
+        if (source != null) {
+            String superclass = source.superclass;
+            integration = source.marker
+                    || (superclass != null && isIntegrationClass(superclass, classes, integrationClasses));
+        }
+        integrationClasses.put(className, integration);
+        return integration;
+    }
+
+    private static String className(Path source) {
+        String name = source.getFileName().toString();
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    private static ScannedSource scanSource(Path source) throws IOException {
+        ByteBuffer content = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large");
+            }
+            if (content.capacity() < size) {
+                content = ByteBuffer.allocate((int) size);
+                BUFFERS.set(content);
+            }
+            content.clear().limit((int) size);
+            while (content.hasRemaining() && channel.read(content) != -1) {
+                // Read until the buffer is full
+            }
+            content.flip();
+        }
+        if (indexOf(content, MARKER, 0) >= 0) {
+            return new ScannedSource(true, null);
+        }
+        return new ScannedSource(false, findSuperclass(content, className(source)));
+    }
+
+    /**
+     * Finds "class Name ... extends Superclass" outside of comments and literals and returns the simple name of the
+     * superclass.
+     *
+     * @return Returns the superclass or null if the class was not found or does not extend another class
+     */
+    static @Nullable String findSuperclass(ByteBuffer content, String className) {
+        byte[] name = className.getBytes(StandardCharsets.US_ASCII);
+        int limit = content.limit();
+        boolean afterClass = false;
+        int position = 0;
+        while (position < limit) {
+            byte b = content.get(position);
+            byte next = position + 1 < limit ? content.get(position + 1) : 0;
+            if (b == '/' && next == '/') {
+                while (position < limit && content.get(position) != '\n') {
+                    ++position;
+                }
+            } else if (b == '/' && next == '*') {
+                position += 2;
+                while (position < limit && !(content.get(position) == '*' && position + 1 < limit
+                        && content.get(position + 1) == '/')) {
+                    ++position;
+                }
+                position += 2;
+            } else if (b == '"' || b == '\'') {
+                position = skipLiteral(content, position);
+                afterClass = false;
+            } else if (isIdentifierPart(b)) {
+                int start = position;
+                while (position < limit && isIdentifierPart(content.get(position))) {
+                    ++position;
+                }
+                if (afterClass && position - start == name.length && regionMatches(content, start, name)) {
+                    return superclassOf(content, position);
+                }
+                afterClass = position - start == CLASS.length && regionMatches(content, start, CLASS);
+            } else {
+                if (!isWhitespace(b)) {
+                    afterClass = false;
+                }
+                ++position;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param position The position after the class name
+     * @return Returns the simple name of the superclass of the declaration or null
+     */
+    private static @Nullable String superclassOf(ByteBuffer content, int position) {
+        int limit = content.limit();
+        position = skipWhitespace(content, position);
+        // Type parameters: class Name<T extends Something>
+        if (position < limit && content.get(position) == '<') {
+            int depth = 0;
+            do {
+                byte b = content.get(position++);
+                if (b == '<') {
+                    ++depth;
+                } else if (b == '>') {
+                    --depth;
+                }
+            } while (depth > 0 && position < limit);
+            position = skipWhitespace(content, position);
+        }
+        if (!regionMatches(content, position, EXTENDS)) {
+            return null;
+        }
+        position = skipWhitespace(content, position + EXTENDS.length);
+        int superclassStart = position;
+        while (position < limit && (isIdentifierPart(content.get(position)) || content.get(position) == '.')) {
+            if (content.get(position) == '.') {
+                // Qualified name, keep the simple name
+                superclassStart = position + 1;
+            }
+            ++position;
+        }
+        if (position == superclassStart) {
+            return null;
+        }
+        byte[] superclass = new byte[position - superclassStart];
+        for (int i = 0; i < superclass.length; ++i) {
+            superclass[i] = content.get(superclassStart + i);
+        }
+        return new String(superclass, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param position The position of the opening quote of a string or character literal
+     * @return Returns the position after the closing quote
+     */
+    private static int skipLiteral(ByteBuffer content, int position) {
+        byte quote = content.get(position++);
+        while (position < content.limit()) {
+            byte b = content.get(position++);
+            if (b == '\\') {
+                ++position;
+            } else if (b == quote || b == '\n') {
+                break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Searches the given pattern. The first byte of the pattern is located first, the remaining bytes are only
+     * compared at these positions.
+     *
+     * @return Returns the position of the first occurrence at or after from, or -1
+     */
+    static int indexOf(ByteBuffer content, byte[] pattern, int from) {
+        byte first = pattern[0];
+        int last = content.limit() - pattern.length;
+        for (int i = from; i <= last; ++i) {
+            if (content.get(i) == first && regionMatches(content, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(ByteBuffer content, int position, byte[] pattern) {
+        if (position < 0 || position + pattern.length > content.limit()) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; ++i) {
+            if (content.get(position + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(ByteBuffer content, int position) {
+        while (position < content.limit() && isWhitespace(content.get(position))) {
+            ++position;
+        }
+        return position;
+    }
+
+    private static int skipWhitespaceBackwards(ByteBuffer content, int position) {
+        while (position >= 0 && isWhitespace(content.get(position))) {
+            --position;
+        }
+        return position;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private static boolean isIdentifierPart(byte b) {
+        // Bytes of non-ASCII characters are negative and count as identifier parts
+        return b < 0 || b == '_' || b == '$' || b >= '0' && b <= '9' || b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+    }
+}
@@ -0,0 +1,102 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import java.util.Collection;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An OSGi version range like "[1.0,2.0)", "(1.0,2.0]" or "1.0". A single version means "at least this version".
+ * Versions are compared with {@link ComparableVersion}.
+ */
+public class VersionRange {
+    private final ComparableVersion floor;
+    private final boolean floorInclusive;
+    private final @Nullable ComparableVersion ceiling;
+    private final boolean ceilingInclusive;
+
+    private VersionRange(ComparableVersion floor, boolean floorInclusive, @Nullable ComparableVersion ceiling,
+            boolean ceilingInclusive) {
+        this.floor = floor;
+        this.floorInclusive = floorInclusive;
+        this.ceiling = ceiling;
+        this.ceilingInclusive = ceilingInclusive;
+    }
+
+    /**
+     * Parses an OSGi version range.
+     *
+     * @param range A version range, for example the unquoted version attribute of an Import-Package clause
+     * @return Returns the version range
+     * @throws IllegalArgumentException If the range is not valid
+     */
+    public static VersionRange parse(String range) {
+        String value = range.trim();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Empty version range");
+        }
+        char first = value.charAt(0);
+        if (first != '[' && first != '(') {
+            return new VersionRange(new ComparableVersion(value), true, null, false);
+        }
+        char last = value.charAt(value.length() - 1);
+        int comma = value.indexOf(',');
+        if ((last != ']' && last != ')') || comma == -1) {
+            throw new IllegalArgumentException("Version range not valid: " + range);
+        }
+        String floor = value.substring(1, comma).trim();
+        String ceiling = value.substring(comma + 1, value.length() - 1).trim();
+        if (floor.isEmpty() || ceiling.isEmpty()) {
+            throw new IllegalArgumentException("Version range not valid: " + range);
+        }
+        return new VersionRange(new ComparableVersion(floor), first == '[', new ComparableVersion(ceiling),
+                last == ']');
+    }
+
+    /**
+     * @param version A version
+     * @return Returns true if the version is within this range
+     */
+    public boolean includes(ComparableVersion version) {
+        int cmp = version.compareTo(floor);
+        if (cmp < 0 || (cmp == 0 && !floorInclusive)) {
+            return false;
+        }
+        ComparableVersion ceiling = this.ceiling;
+        if (ceiling == null) {
+            return true;
+        }
+        cmp = version.compareTo(ceiling);
+        return cmp < 0 || (cmp == 0 && ceilingInclusive);
+    }
+
+    /**
+     * Selects the highest version that is within this range.
+     *
+     * @param versions Known versions. Dynamic versions like "+" are ignored.
+     * @return Returns the highest matching version or null
+     */
+    public @Nullable String highestMatch(Collection<String> versions) {
+        String best = null;
+        ComparableVersion bestVersion = null;
+        for (String version : versions) {
+            if (version == null || version.isEmpty() || version.contains("+")) {
+                continue;
+            }
+            ComparableVersion comparableVersion = new ComparableVersion(version);
+            if (includes(comparableVersion) && (bestVersion == null || comparableVersion.compareTo(bestVersion) > 0)) {
+                best = version;
+                bestVersion = comparableVersion;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        ComparableVersion ceiling = this.ceiling;
+        if (ceiling == null) {
+            return floor.toString();
+        }
+        return (floorInclusive ? "[" : "(") + floor + "," + ceiling + (ceilingInclusive ? "]" : ")");
+    }
+}
@@ -0,0 +1,172 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApiSurfaceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Set<String> packages(String... packages) {
+        return new HashSet<>(Arrays.asList(packages));
+    }
+
+    @Test
+    public void publicAndProtectedMembersAreApi() {
+        String source = "package org.example.api;\n" //
+                + "import org.a.A;\nimport org.b.B;\nimport org.c.C;\nimport org.d.D;\nimport org.e.E;\n" //
+                + "public class Service {\n" //
+                + "    public A a;\n" //
+                + "    protected B b() { return null; }\n" //
+                + "    private C c;\n" //
+                + "    D d(E e) { return null; }\n" //
+                + "}\n";
+        assertEquals(packages("org.a", "org.b"), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void signaturePartsAreApi() {
+        String source = "import org.a.A;\nimport org.b.B;\nimport org.c.C;\nimport org.d.D;\nimport org.e.E;\n"
+                + "import org.f.F;\nimport org.g.G;\n" //
+                + "@A public class Service<T extends B> extends C implements D {\n" //
+                + "    public <X extends G> void run(F f) throws E { }\n" //
+                + "}\n";
+        assertEquals(packages("org.a", "org.b", "org.c", "org.d", "org.e", "org.f", "org.g"),
+                ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void bodiesAndInitializersAreSkipped() {
+        String source = "import org.a.A;\nimport org.b.B;\nimport org.c.C;\nimport org.d.D;\n" //
+                + "public class Service {\n" //
+                + "    public Object field = new A() { public B b() { return null; } };\n" //
+                + "    static { C c = null; }\n" //
+                + "    public void run() { D d = null; }\n" //
+                + "}\n";
+        assertEquals(Collections.emptySet(), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void interfaceMembersAreApiUnlessPrivate() {
+        String source = "import org.a.A;\nimport org.b.B;\n" //
+                + "public interface Service {\n" //
+                + "    A get();\n" //
+                + "    private B helper() { return null; }\n" //
+                + "}\n";
+        assertEquals(packages("org.a"), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void packagePrivateTypesAreNotApi() {
+        String source = "import org.a.A;\nimport org.b.B;\n" //
+                + "class Helper {\n" //
+                + "    public A a;\n" //
+                + "}\n" //
+                + "public class Service {\n" //
+                + "    public B b;\n" //
+                + "    private static class Inner { public A a; }\n" //
+                + "}\n";
+        assertEquals(packages("org.b"), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void qualifiedNamesAndNestedTypes() {
+        String source = "import org.a.Outer;\n" //
+                + "public class Service {\n" //
+                + "    public Outer.Inner inner;\n" //
+                + "    public org.b.Type type;\n" //
+                + "    public java.util.Map.Entry<String, org.c.Value> entry;\n" //
+                + "}\n";
+        assertEquals(packages("org.a", "org.b", "java.util", "org.c"), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void wildcardImportsAreAssumedForTypeNames() {
+        String source = "import org.a.*;\nimport static org.b.Constants.*;\nimport static org.c.Util.run;\n" //
+                + "public class Service {\n" //
+                + "    public Widget widget;\n" //
+                + "    public int count;\n" //
+                + "}\n";
+        assertEquals(packages("org.a"), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void commentsAndLiteralsAreIgnored() {
+        String source = "import org.a.A;\n// import org.b.B;\n/* import org.c.C; */\n" //
+                + "public class Service {\n" //
+                + "    /** Returns {@link org.d.D} */\n" //
+                + "    public A a() { return null; } // org.e.E\n" //
+                + "    public static final String NAME = \"import org.f.F; { public org.g.G g; }\";\n" //
+                + "    public static final char BRACE = '{';\n" //
+                + "}\n";
+        assertEquals(packages("org.a"), ApiSurface.referencedPackages(source));
+    }
+
+    @Test
+    public void varargsAndArrays() {
+        String source = "import org.a.A;\nimport org.b.B;\n" //
+                + "public class Service {\n" //
+                + "    public void run(A... values) { }\n" //
+                + "    public B[] values() { return null; }\n" //
+                + "}\n";
+        assertEquals(packages("org.a", "org.b"), ApiSurface.referencedPackages(source));
+    }
+
+    private void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void scanReadsTheSourcesOfExportedPackages() throws IOException {
+        Path projectDir = folder.getRoot().toPath();
+        write(projectDir.resolve("src/main/java/org/example/api/Service.java"),
+                "package org.example.api;\nimport org.a.A;\npublic interface Service { A get(); }\n");
+        write(projectDir.resolve("src/main/java/org/example/internal/Impl.java"),
+                "package org.example.internal;\nimport org.b.B;\npublic class Impl { public B b; }\n");
+
+        ApiSurface surface = ApiSurface.scan(projectDir, Collections.singleton("org.example.api"));
+        assertTrue(surface.isComplete());
+        assertEquals(Collections.emptyList(), surface.getProblems());
+        assertEquals(1, surface.getScannedSources());
+        assertTrue(surface.isApi("org.a"));
+        assertFalse(surface.isApi("org.b"));
+    }
+
+    @Test
+    public void missingSourcesMakeEveryImportApi() throws IOException {
+        Path projectDir = folder.getRoot().toPath();
+        write(projectDir.resolve("src/org/example/api/Service.java"),
+                "package org.example.api;\npublic interface Service { }\n");
+
+        ApiSurface surface = ApiSurface.scan(projectDir, Arrays.asList("org.example.api", "org.example.missing"));
+        assertFalse(surface.isComplete());
+        assertEquals(1, surface.getProblems().size());
+        assertTrue(surface.getProblems().get(0).contains("org.example.missing"));
+        assertEquals(1, surface.getScannedSources());
+        assertTrue(surface.isApi("org.anything"));
+    }
+
+    @Test
+    public void findSourcesInStableOrder() throws IOException {
+        Path projectDir = folder.getRoot().toPath();
+        Path packageDir = projectDir.resolve("src/main/java/org/example/api");
+        write(packageDir.resolve("B.java"), "");
+        write(packageDir.resolve("A.java"), "");
+        write(packageDir.resolve("notes.txt"), "");
+        assertEquals(Arrays.asList(packageDir.resolve("A.java"), packageDir.resolve("B.java")),
+                ApiSurface.findSources(projectDir, Arrays.asList("org.example.api", "org.example.missing")));
+    }
+}
@@ -0,0 +1,159 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyCacheStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFile;
+    private Path journalFile;
+    private final Map<String, Dependency> dependencies = new HashMap<>();
+    private final Map<String, Long> unresolved = new HashMap<>();
+
+    @Before
+    public void setup() {
+        cacheFile = folder.getRoot().toPath().resolve("dependency.cache");
+        journalFile = cacheFile.resolveSibling("dependency.cache.log");
+    }
+
+    private void load() throws IOException {
+        dependencies.clear();
+        unresolved.clear();
+        new DependencyCacheStore(cacheFile).load(dependencies, unresolved);
+    }
+
+    @Test
+    public void loadWithoutFiles() throws IOException {
+        load();
+        assertTrue(dependencies.isEmpty());
+        assertTrue(unresolved.isEmpty());
+    }
+
+    @Test
+    public void journalIsReplayed() throws IOException {
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.append("org.slf4j", Dependency.of("slf4j-api", "org.slf4j", "+"));
+        store.appendUnresolved("org.example.unknown", 1500000000L);
+        store.close();
+        assertFalse(Files.exists(cacheFile));
+
+        load();
+        assertEquals(Dependency.of("slf4j-api", "org.slf4j", "+"), dependencies.get("org.slf4j"));
+        assertEquals(Long.valueOf(1500000000L), unresolved.get("org.example.unknown"));
+    }
+
+    @Test
+    public void laterJournalEntriesWin() throws IOException {
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.appendUnresolved("org.example", 1L);
+        store.append("org.example", Dependency.of("example", "org.example", "1.0"));
+        store.append("org.other", Dependency.of("other", "org.other", "1.0"));
+        store.appendUnresolved("org.other", 2L);
+        store.close();
+
+        load();
+        assertEquals(Dependency.of("example", "org.example", "1.0"), dependencies.get("org.example"));
+        assertFalse(unresolved.containsKey("org.example"));
+        assertFalse(dependencies.containsKey("org.other"));
+        assertEquals(Long.valueOf(2L), unresolved.get("org.other"));
+    }
+
+    @Test
+    public void transitiveDependenciesAndLatestKnownVersionAreKept() throws IOException {
+        Dependency dependency = Dependency.ByMavenCoord("org.eclipse.smarthome.io:org.eclipse.smarthome.io.net:+",
+                "org.apache.commons:commons-exec:+");
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.append("org.eclipse.smarthome.io.net", dependency);
+        store.close();
+
+        load();
+        Dependency loaded = dependencies.get("org.eclipse.smarthome.io.net");
+        assertEquals(dependency, loaded);
+        assertEquals("+", loaded.getLatestKnownVersion());
+        assertEquals(Arrays.asList(Dependency.of("commons-exec", "org.apache.commons", "+")),
+                Arrays.asList(loaded.getTransitiveDeps().toArray()));
+    }
+
+    @Test
+    public void truncatedJournalLineIsIgnored() throws IOException {
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.append("org.slf4j", Dependency.of("slf4j-api", "org.slf4j", "+"));
+        store.close();
+        // A crash while appending leaves an incomplete last line
+        Files.write(journalFile, "{\"key\":\"org.example\",\"dependency\":{\"gro".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        load();
+        assertEquals(1, dependencies.size());
+        assertTrue(dependencies.containsKey("org.slf4j"));
+        assertTrue(unresolved.isEmpty());
+    }
+
+    @Test
+    public void compactionMergesTheJournalIntoTheSnapshot() throws IOException {
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.load(dependencies, unresolved);
+        dependencies.put("org.slf4j", Dependency.of("slf4j-api", "org.slf4j", "+"));
+        store.append("org.slf4j", dependencies.get("org.slf4j"));
+        unresolved.put("org.example.unknown", 3L);
+        store.appendUnresolved("org.example.unknown", 3L);
+
+        store.compact(dependencies, unresolved);
+        assertTrue(Files.exists(cacheFile));
+        assertFalse(Files.exists(journalFile));
+        assertFalse(store.needsCompaction());
+
+        // Appends after the compaction go to a new journal on top of the snapshot
+        store.append("org.osgi.framework", Dependency.of("osgi.core", "org.osgi", "6.0.0"));
+        store.close();
+        assertTrue(Files.exists(journalFile));
+
+        load();
+        assertEquals(2, dependencies.size());
+        assertEquals(Dependency.of("osgi.core", "org.osgi", "6.0.0"), dependencies.get("org.osgi.framework"));
+        assertEquals(Long.valueOf(3L), unresolved.get("org.example.unknown"));
+    }
+
+    @Test
+    public void compactionIsNeededOnceTheJournalIsLargeEnough() throws IOException {
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.load(dependencies, unresolved);
+        for (int i = 0; i < 99; ++i) {
+            store.appendUnresolved("org.example" + i, i);
+        }
+        assertFalse(store.needsCompaction());
+        store.appendUnresolved("org.example99", 99);
+        assertTrue(store.needsCompaction());
+        store.close();
+    }
+
+    @Test
+    public void oldCacheFormatIsAccepted() throws IOException {
+        Files.write(cacheFile, ("{\"org.slf4j\":{\"group\":\"org.slf4j\",\"name\":\"slf4j-api\",\"version\":\"+\","
+                + "\"transitiveDependecy\":{}}}").getBytes(StandardCharsets.UTF_8));
+
+        load();
+        assertEquals(Dependency.of("slf4j-api", "org.slf4j", "+"), dependencies.get("org.slf4j"));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedSnapshotIsReported() throws IOException {
+        Files.write(cacheFile, "[\n{\"key\":\"org.slf4j\",\"dependency\":".getBytes(StandardCharsets.UTF_8));
+        load();
+    }
+}
@@ -0,0 +1,162 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class DependencyMinimizerTest {
+    private static final Map<String, Integer> TYPE_ORDER = new HashMap<>();
+    static {
+        TYPE_ORDER.put("api", 0);
+        TYPE_ORDER.put("compile", 1);
+        TYPE_ORDER.put("implementation", 2);
+        TYPE_ORDER.put("compileOnly", 3);
+        TYPE_ORDER.put("testImplementation", 5);
+        TYPE_ORDER.put("testCompile", 6);
+        TYPE_ORDER.put("runtime", 10);
+    }
+
+    private final Map<Dependency, String> dependencies = new HashMap<>();
+
+    private static Dependency dependency(String name, String version, Dependency... transitive) {
+        return Dependency.of(name, "org.example", version).withTransitiveDependencies(Arrays.asList(transitive));
+    }
+
+    private void add(Dependency dependency, String type) {
+        dependencies.put(dependency, type);
+    }
+
+    /**
+     * @return The names of the kept dependencies and their configurations, sorted
+     */
+    private Map<String, String> minimize() {
+        Map<String, String> minimized = new TreeMap<>();
+        new DependencyMinimizer(TYPE_ORDER).minimize(dependencies)
+                .forEach((dependency, type) -> minimized.put(dependency.getName(), type));
+        return minimized;
+    }
+
+    private static Map<String, String> kept(String... nameAndType) {
+        Map<String, String> kept = new TreeMap<>();
+        for (int i = 0; i < nameAndType.length; i += 2) {
+            kept.put(nameAndType[i], nameAndType[i + 1]);
+        }
+        return kept;
+    }
+
+    @Test
+    public void withoutTransitiveDependenciesAllAreKept() {
+        add(dependency("a", "+"), "implementation");
+        add(dependency("b", "+"), "compileOnly");
+        DependencyMinimizer minimizer = new DependencyMinimizer(TYPE_ORDER);
+        assertSame(dependencies, minimizer.minimize(dependencies));
+    }
+
+    @Test
+    public void sameOrWeakerConfigurationIsProvided() {
+        add(dependency("a", "+", dependency("b", "+"), dependency("c", "+")), "api");
+        add(dependency("b", "+"), "api");
+        add(dependency("c", "+"), "implementation");
+        assertEquals(kept("a", "api"), minimize());
+    }
+
+    @Test
+    public void strongerConfigurationIsNotProvided() {
+        add(dependency("a", "+", dependency("b", "+")), "implementation");
+        add(dependency("b", "+"), "api");
+        assertEquals(kept("a", "implementation", "b", "api"), minimize());
+    }
+
+    @Test
+    public void compileOnlyProvidesOnlyCompileOnly() {
+        add(dependency("a", "+", dependency("b", "+"), dependency("c", "+")), "compileOnly");
+        add(dependency("b", "+"), "compileOnly");
+        add(dependency("c", "+"), "runtime");
+        assertEquals(kept("a", "compileOnly", "c", "runtime"), minimize());
+    }
+
+    @Test
+    public void testConfigurationsProvideOnlyTestConfigurations() {
+        add(dependency("a", "+", dependency("b", "+"), dependency("c", "+")), "testImplementation");
+        add(dependency("b", "+"), "testCompile");
+        add(dependency("c", "+"), "runtime");
+        assertEquals(kept("a", "testImplementation", "c", "runtime"), minimize());
+    }
+
+    @Test
+    public void unknownConfigurationsProvideOnlyThemselves() {
+        add(dependency("a", "+", dependency("b", "+"), dependency("c", "+")), "annotationProcessor");
+        add(dependency("b", "+"), "annotationProcessor");
+        add(dependency("c", "+"), "runtime");
+        add(dependency("d", "+", dependency("e", "+")), "api");
+        add(dependency("e", "+"), "annotationProcessor");
+        assertEquals(kept("a", "annotationProcessor", "c", "runtime", "d", "api", "e", "annotationProcessor"),
+                minimize());
+    }
+
+    @Test
+    public void latestVersionProvidesPinnedVersions() {
+        add(dependency("a", "+", dependency("b", "+")), "implementation");
+        add(dependency("b", "1.0"), "implementation");
+        assertEquals(kept("a", "implementation"), minimize());
+    }
+
+    @Test
+    public void pinnedVersionDoesNotProvideTheLatestVersion() {
+        add(dependency("a", "+", dependency("b", "2.0")), "implementation");
+        add(dependency("b", "+"), "implementation");
+        assertEquals(kept("a", "implementation", "b", "implementation"), minimize());
+    }
+
+    @Test
+    public void pinnedVersionsProvideLowerVersions() {
+        add(dependency("a", "+", dependency("b", "1.10"), dependency("c", "1.10")), "implementation");
+        add(dependency("b", "1.9"), "implementation");
+        add(dependency("c", "1.11"), "implementation");
+        assertEquals(kept("a", "implementation", "c", "implementation"), minimize());
+    }
+
+    @Test
+    public void highestTransitiveVersionIsProvided() {
+        Dependency low = dependency("x", "1.0", dependency("c", "1.0"));
+        Dependency high = dependency("y", "1.0", dependency("c", "2.0"));
+        add(dependency("a", "+", low, high), "implementation");
+        add(dependency("c", "1.5"), "implementation");
+        assertEquals(kept("a", "implementation"), minimize());
+    }
+
+    @Test
+    public void twoDependenciesProvidingEachOtherKeepOne() {
+        add(dependency("a", "+", dependency("b", "+")), "implementation");
+        add(dependency("b", "+", dependency("a", "+")), "implementation");
+        // Equal configurations and amount of transitive dependencies: The name decides
+        assertEquals(kept("a", "implementation"), minimize());
+    }
+
+    @Test
+    public void strongerOfTwoProvidingEachOtherIsKept() {
+        add(dependency("a", "+", dependency("b", "+")), "implementation");
+        add(dependency("b", "+", dependency("a", "+")), "api");
+        assertEquals(kept("b", "api"), minimize());
+    }
+
+    @Test
+    public void runtimeDependenciesProvideNothing() {
+        Dependency d = dependency("d", "1.0");
+        Dependency c = dependency("c", "1.0", d);
+        Dependency a = Dependency.of("a", "org.example", "1.0").withTransitiveDependencies(
+                Collections.singletonList(dependency("b", "1.0")), Collections.singletonList(c));
+        add(a, "implementation");
+        add(dependency("b", "1.0"), "implementation");
+        add(c, "implementation");
+        add(d, "implementation");
+        // c is only a runtime dependency of a and must be kept. It provides d.
+        assertEquals(kept("a", "implementation", "c", "implementation"), minimize());
+    }
+}
@@ -0,0 +1,86 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyResolverTest {
+    private static final long TTL = TimeUnit.DAYS.toMillis(7);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFile;
+    private long now;
+
+    @Before
+    public void setup() throws IOException {
+        cacheFile = folder.getRoot().toPath().resolve("dependency.cache");
+        now = System.currentTimeMillis();
+        // Enough journal entries for a compaction: One expired and 100 recent negative entries
+        DependencyCacheStore store = new DependencyCacheStore(cacheFile);
+        store.appendUnresolved("org.example.expired", now - TTL - 1);
+        for (int i = 0; i < 100; ++i) {
+            store.appendUnresolved("org.example.unknown" + i, now);
+        }
+        store.close();
+    }
+
+    private DependencyResolver resolver(long unresolvedCacheTtl) throws IOException {
+        ResolverRules rules = ResolverRules.parse(new BufferedReader(new StringReader("")));
+        DependencyResolver resolver = new DependencyResolver(cacheFile, rules, 0, true, true, 1, unresolvedCacheTtl);
+        // Nothing listens there, lookups fail fast
+        resolver.setSearchUrl("http://127.0.0.1:1/solrsearch/select");
+        return resolver;
+    }
+
+    private Map<String, Long> loadUnresolved() throws IOException {
+        Map<String, Long> unresolved = new HashMap<>();
+        new DependencyCacheStore(cacheFile).load(new HashMap<>(), unresolved);
+        return unresolved;
+    }
+
+    @Test
+    public void knownUnresolvedPackagesAreNotLookedUp() throws IOException {
+        DependencyResolver resolver = resolver(TTL);
+        RunMetrics metrics = new RunMetrics();
+        resolver.setMetrics(metrics);
+        resolver.resolveDependency("org.example.unknown1");
+        assertEquals(1, metrics.get("resolver.unresolvedCache"));
+        resolver.writeCache();
+    }
+
+    @Test
+    public void expiredEntriesAreDroppedOnCompaction() throws IOException {
+        resolver(TTL).writeCache();
+        Map<String, Long> unresolved = loadUnresolved();
+        assertEquals(100, unresolved.size());
+        assertFalse(unresolved.containsKey("org.example.expired"));
+    }
+
+    @Test
+    public void ignoredEntriesSurviveTheCompaction() throws IOException {
+        DependencyResolver resolver = resolver(TTL);
+        resolver.setIgnoreUnresolvedCache(true);
+        RunMetrics metrics = new RunMetrics();
+        resolver.setMetrics(metrics);
+        resolver.resolveDependency("org.example.unknown1");
+        assertEquals(0, metrics.get("resolver.unresolvedCache"));
+        resolver.writeCache();
+
+        Map<String, Long> unresolved = loadUnresolved();
+        assertEquals(100, unresolved.size());
+        assertEquals(Long.valueOf(now), unresolved.get("org.example.unknown0"));
+    }
+}
@@ -0,0 +1,113 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.gradlehelper.manifestToGradle.tools.ManifestHeader.Clause;
+import org.junit.Test;
+
+public class ManifestHeaderTest {
+    @Test
+    public void emptyAndMissingHeaders() {
+        assertEquals(Collections.emptyList(), ManifestHeader.parse(null));
+        assertEquals(Collections.emptyList(), ManifestHeader.parse(""));
+        assertEquals(Collections.emptyList(), ManifestHeader.parse(" , ,"));
+        assertEquals(Collections.emptyList(), ManifestHeader.parsePaths(null));
+    }
+
+    @Test
+    public void pathsOfSeveralClauses() {
+        assertEquals(Arrays.asList("org.slf4j", "org.osgi.framework", "javax.servlet.http"),
+                ManifestHeader.parsePaths("org.slf4j,\n org.osgi.framework , javax.servlet.http"));
+    }
+
+    @Test
+    public void quotedVersionRangeContainsTheClauseSeparator() {
+        List<Clause> clauses = ManifestHeader
+                .parse("org.eclipse.smarthome.core.thing;version=\"[0.9.0,0.10.0)\",org.slf4j;version=1.7");
+        assertEquals(2, clauses.size());
+        assertEquals(Arrays.asList("org.eclipse.smarthome.core.thing"), clauses.get(0).getPaths());
+        assertEquals("[0.9.0,0.10.0)", clauses.get(0).getAttribute("version"));
+        assertEquals(Arrays.asList("org.slf4j"), clauses.get(1).getPaths());
+        assertEquals("1.7", clauses.get(1).getAttribute("version"));
+    }
+
+    @Test
+    public void severalPathsShareTheParameters() {
+        List<Clause> clauses = ManifestHeader.parse("org.a;org.b;version=\"1.0\";resolution:=optional");
+        assertEquals(1, clauses.size());
+        Clause clause = clauses.get(0);
+        assertEquals(Arrays.asList("org.a", "org.b"), clause.getPaths());
+        assertEquals("1.0", clause.getAttribute("version"));
+        assertEquals("optional", clause.getDirective("resolution"));
+        assertNull(clause.getAttribute("resolution"));
+        assertNull(clause.getDirective("version"));
+    }
+
+    @Test
+    public void directivesAndAttributesAreSeparated() {
+        Clause clause = ManifestHeader
+                .parse("org.example.api;uses:=\"org.osgi.framework,org.slf4j\";version=\"2.2.0\";x-internal:=true")
+                .get(0);
+        assertEquals("org.osgi.framework,org.slf4j", clause.getDirective("uses"));
+        assertEquals("true", clause.getDirective("x-internal"));
+        assertEquals(1, clause.getAttributes().size());
+        assertEquals(2, clause.getDirectives().size());
+    }
+
+    @Test
+    public void typedAttribute() {
+        Clause clause = ManifestHeader.parse("org.example;version:Version=\"1.2.3\";size:Long=12").get(0);
+        assertEquals("1.2.3", clause.getAttribute("version"));
+        assertEquals("12", clause.getAttribute("size"));
+    }
+
+    @Test
+    public void escapesWithinQuotes() {
+        Clause clause = ManifestHeader.parse("org.example;note=\"a \\\"quoted\\\" \\\\ value;,\"").get(0);
+        assertEquals("a \"quoted\" \\ value;,", clause.getAttribute("note"));
+    }
+
+    @Test
+    public void whitespaceAroundNamesAndArguments() {
+        Clause clause = ManifestHeader.parse("  org.example  ;  version = 1.0 ; resolution := optional  ").get(0);
+        assertEquals(Arrays.asList("org.example"), clause.getPaths());
+        assertEquals("1.0", clause.getAttribute("version"));
+        assertEquals("optional", clause.getDirective("resolution"));
+    }
+
+    @Test
+    public void clausesWithoutParametersHaveEmptyMaps() {
+        Clause clause = ManifestHeader.parse("org.example").get(0);
+        assertTrue(clause.getAttributes().isEmpty());
+        assertTrue(clause.getDirectives().isEmpty());
+        assertNull(clause.getAttribute("version"));
+    }
+
+    @Test
+    public void unexpectedCharactersAfterAnArgumentAreSkipped() {
+        List<Clause> clauses = ManifestHeader.parse("org.a;version=\"1.0\"garbage;resolution:=optional,org.b");
+        assertEquals(2, clauses.size());
+        assertEquals("1.0", clauses.get(0).getAttribute("version"));
+        assertEquals("optional", clauses.get(0).getDirective("resolution"));
+        assertEquals(Arrays.asList("org.b"), clauses.get(1).getPaths());
+    }
+
+    @Test
+    public void unterminatedQuoteRunsToTheEndOfTheClause() {
+        List<Clause> clauses = ManifestHeader.parse("org.a;version=\"[1.0;x:=y , org.b;resolution:=optional");
+        assertEquals(2, clauses.size());
+        assertEquals(Arrays.asList("org.a"), clauses.get(0).getPaths());
+        assertEquals("[1.0;x:=y", clauses.get(0).getAttribute("version"));
+        assertTrue(clauses.get(0).getDirectives().isEmpty());
+        assertEquals(Arrays.asList("org.b"), clauses.get(1).getPaths());
+        assertEquals("optional", clauses.get(1).getDirective("resolution"));
+
+        // Escapes are not resolved
+        assertEquals("\\\"", ManifestHeader.parse("org.c;a=\"\\\"").get(0).getAttribute("a"));
+        assertEquals(Arrays.asList("org.a", "2.0)"), ManifestHeader.parsePaths("org.a;version=\"[1.0,2.0)"));
+    }
+}
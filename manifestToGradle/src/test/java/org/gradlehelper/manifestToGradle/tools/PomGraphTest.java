@@ -0,0 +1,118 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PomGraphTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path repository;
+    private PomGraph graph;
+
+    @Before
+    public void setUp() {
+        repository = folder.getRoot().toPath();
+        graph = new PomGraph(repository, new RunMetrics());
+    }
+
+    /**
+     * Writes the POM of org.example:artifact:1.0. Dependencies are given as "artifact" or "artifact:scope" or
+     * "artifact:scope:optional" of the same group and version.
+     */
+    private void pom(String artifact, String... dependencies) throws IOException {
+        StringBuilder pom = new StringBuilder("<project><modelVersion>4.0.0</modelVersion>")
+                .append("<groupId>org.example</groupId><artifactId>").append(artifact)
+                .append("</artifactId><version>1.0</version><dependencies>");
+        for (String dependency : dependencies) {
+            String[] parts = dependency.split(":");
+            pom.append("<dependency><groupId>org.example</groupId><artifactId>").append(parts[0])
+                    .append("</artifactId><version>1.0</version>");
+            if (parts.length > 1) {
+                pom.append("<scope>").append(parts[1]).append("</scope>");
+            }
+            if (parts.length > 2) {
+                pom.append("<optional>true</optional>");
+            }
+            pom.append("</dependency>");
+        }
+        pom.append("</dependencies></project>");
+        Path file = repository.resolve("org/example").resolve(artifact).resolve("1.0")
+                .resolve(artifact + "-1.0.pom");
+        Files.createDirectories(file.getParent());
+        Files.write(file, pom.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Dependency resolve(String artifact) {
+        return graph.withTransitiveDependencies(Dependency.of(artifact, "org.example", "+"));
+    }
+
+    private static Map<String, Dependency> transitive(Dependency dependency) {
+        Map<String, Dependency> byName = new HashMap<>();
+        dependency.getTransitiveDeps().forEach(transitive -> byName.put(transitive.getName(), transitive));
+        return byName;
+    }
+
+    @Test
+    public void scopesOfTransitiveDependencies() throws IOException {
+        pom("a", "b", "c:runtime", "test:test", "provided:provided", "optional:compile:optional");
+        pom("b");
+        pom("c", "d");
+        pom("d");
+
+        Dependency a = resolve("a");
+        Map<String, Dependency> transitive = transitive(a);
+        assertEquals(2, transitive.size());
+        assertFalse(a.isRuntimeDependency(transitive.get("b")));
+        assertTrue(a.isRuntimeDependency(transitive.get("c")));
+        // The scope is a property of the edge: d is a compile dependency of c
+        Dependency c = transitive.get("c");
+        assertFalse(c.isRuntimeDependency(transitive(c).get("d")));
+    }
+
+    @Test
+    public void cyclesDoNotDependOnTheFirstPath() throws IOException {
+        pom("x", "y");
+        pom("y", "x");
+        pom("z", "y");
+
+        Dependency x = resolve("x");
+        Dependency y = resolve("y");
+        Dependency z = resolve("z");
+        assertEquals(1, transitive(x).size());
+        // The edge back to x is dropped on this path
+        assertTrue(transitive(transitive(x).get("y")).isEmpty());
+        // y was reached from x first, its own result still contains x
+        assertTrue(transitive(y).containsKey("x"));
+        assertTrue(transitive(transitive(z).get("y")).containsKey("x"));
+    }
+
+    @Test
+    public void unknownArtifactsAreUnchanged() {
+        Dependency unknown = Dependency.of("unknown", "org.example", "+");
+        assertSame(unknown, graph.withTransitiveDependencies(unknown));
+    }
+
+    @Test
+    public void runtimeDependenciesSurviveTheCacheFormat() throws IOException {
+        pom("a", "b", "c:runtime");
+        pom("b");
+        pom("c");
+        Dependency a = resolve("a");
+        Dependency read = new Dependency.GsonAdapter().fromJson(new Dependency.GsonAdapter().toJson(a));
+        Map<String, Dependency> transitive = transitive(read);
+        assertFalse(read.isRuntimeDependency(transitive.get("b")));
+        assertTrue(read.isRuntimeDependency(transitive.get("c")));
+    }
+}
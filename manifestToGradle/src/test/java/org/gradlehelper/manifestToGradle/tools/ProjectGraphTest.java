@@ -0,0 +1,94 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProjectGraphTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Path> manifestFiles = new ArrayList<>();
+    private final Map<String, List<String>> imports = new HashMap<>();
+
+    /**
+     * Creates bundle "name" exporting the package "name" and importing the packages of the given bundles.
+     */
+    private void bundle(String name, String... importedBundles) throws IOException {
+        Path manifestFile = folder.getRoot().toPath().resolve(name).resolve("META-INF/MANIFEST.MF");
+        Files.createDirectories(manifestFile.getParent());
+        Files.write(manifestFile, ("Manifest-Version: 1.0\nExport-Package: " + name + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        manifestFiles.add(manifestFile);
+        imports.put(":" + name, Arrays.asList(importedBundles));
+    }
+
+    private ProjectGraph build() {
+        return ProjectGraph.build(ExportIndex.build(folder.getRoot().toPath(), manifestFiles), imports);
+    }
+
+    @Test
+    public void acyclicGraphHasNoBackEdges() throws IOException {
+        bundle("a", "b", "c");
+        bundle("b", "c", "org.slf4j");
+        bundle("c");
+        ProjectGraph graph = build();
+        assertEquals(0, graph.getBackEdgeCount());
+        assertFalse(graph.isBackEdge(":a", ":b"));
+    }
+
+    @Test
+    public void mutualDependencyKeepsOneEdge() throws IOException {
+        bundle("a", "b");
+        bundle("b", "a");
+        ProjectGraph graph = build();
+        assertEquals(Collections.singletonList(":b -> :a"), graph.getBackEdges());
+        assertFalse(graph.isBackEdge(":a", ":b"));
+        assertTrue(graph.isBackEdge(":b", ":a"));
+    }
+
+    @Test
+    public void longerCycleIsBrokenOnce() throws IOException {
+        bundle("a", "b");
+        bundle("b", "c");
+        bundle("c", "a");
+        bundle("d", "a", "c");
+        ProjectGraph graph = build();
+        assertEquals(Collections.singletonList(":c -> :a"), graph.getBackEdges());
+        // Not on the cycle: Both edges of d stay
+        assertFalse(graph.isBackEdge(":d", ":a"));
+        assertFalse(graph.isBackEdge(":d", ":c"));
+    }
+
+    @Test
+    public void importsOfOwnPackagesAreNoEdges() throws IOException {
+        bundle("a", "a");
+        assertEquals(0, build().getBackEdgeCount());
+    }
+
+    @Test
+    public void hashDependsOnBackEdges() throws IOException {
+        bundle("a", "b");
+        bundle("b");
+        ConversionState.Hasher acyclic = new ConversionState.Hasher();
+        build().addTo(acyclic);
+
+        imports.put(":b", Collections.singletonList("a"));
+        ConversionState.Hasher cyclic = new ConversionState.Hasher();
+        build().addTo(cyclic);
+        assertFalse(Arrays.equals(acyclic.finish(), cyclic.finish()));
+    }
+}
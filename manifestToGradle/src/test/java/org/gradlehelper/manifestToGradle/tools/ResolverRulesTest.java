@@ -0,0 +1,121 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.gradlehelper.manifestToGradle.tools.ResolverRules.Action;
+import org.gradlehelper.manifestToGradle.tools.ResolverRules.Rule;
+import org.junit.Test;
+
+public class ResolverRulesTest {
+    private static ResolverRules parse(String... files) throws IOException {
+        BufferedReader[] readers = new BufferedReader[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            readers[i] = new BufferedReader(new StringReader(files[i]));
+        }
+        return ResolverRules.parse(readers);
+    }
+
+    private static String prefix(ResolverRules rules, String packageName) {
+        Rule rule = rules.match(packageName);
+        return rule == null ? null : rule.getPrefix();
+    }
+
+    @Test
+    public void longestPrefixWins() throws IOException {
+        ResolverRules rules = parse("org.example = ignore\norg.example.core = lookup\norg.example.core.api = error\n");
+        assertEquals("org.example", prefix(rules, "org.example"));
+        assertEquals("org.example", prefix(rules, "org.example.other"));
+        assertEquals("org.example.core", prefix(rules, "org.example.core.internal"));
+        assertEquals("org.example.core.api", prefix(rules, "org.example.core.api"));
+        assertEquals("org.example.core.api", prefix(rules, "org.example.core.api.dto"));
+        assertEquals(Action.LOOKUP, rules.match("org.example.core").getAction());
+        assertNull(rules.match("org"));
+        assertNull(rules.match("com.example"));
+    }
+
+    @Test
+    public void prefixMatchesOnlyAtSegmentBoundaries() throws IOException {
+        ResolverRules rules = parse("javax = ignore\norg.example.core = lookup\n");
+        assertEquals("javax", prefix(rules, "javax.servlet"));
+        assertNull(rules.match("javaxx.servlet"));
+        // "org.example.core" is a string prefix of "org.example.corex" but not a parent package
+        assertNull(rules.match("org.example.corex"));
+        assertNull(rules.match("org.example.co"));
+    }
+
+    @Test
+    public void fixedCoordinatesWithTransitiveDependencies() throws IOException {
+        ResolverRules rules = parse(
+                "org.eclipse.smarthome.io.net = org.eclipse.smarthome.io:org.eclipse.smarthome.io.net:+ "
+                        + "| org.apache.commons:commons-exec:+\n");
+        Dependency dependency = rules.match("org.eclipse.smarthome.io.net.http")
+                .getDependency("org.eclipse.smarthome.io.net.http");
+        assertEquals(Dependency.of("org.eclipse.smarthome.io.net", "org.eclipse.smarthome.io", "+"), dependency);
+        assertEquals(Arrays.asList(Dependency.of("commons-exec", "org.apache.commons", "+")),
+                new ArrayList<>(dependency.getTransitiveDeps()));
+    }
+
+    @Test
+    public void placeholdersAreReplaced() throws IOException {
+        ResolverRules rules = parse("org.openhab = org.openhab:{package}:+\n",
+                "org.apache.commons = commons-{3}:commons-{3}:+\n", "org.example = {0}.{1}:{2}-{3}:1.0\n");
+        assertEquals(Dependency.of("org.openhab.binding.foo", "org.openhab", "+"),
+                rules.match("org.openhab.binding.foo").getDependency("org.openhab.binding.foo"));
+        assertEquals(Dependency.of("commons-lang", "commons-lang", "+"),
+                rules.match("org.apache.commons.lang.builder").getDependency("org.apache.commons.lang.builder"));
+        assertEquals(Dependency.of("core-api", "org.example", "1.0"),
+                rules.match("org.example.core.api").getDependency("org.example.core.api"));
+    }
+
+    @Test
+    public void segmentOutOfRangeGivesNoDependency() throws IOException {
+        ResolverRules rules = parse("org.apache.commons = commons-{3}:commons-{3}:+\n",
+                "org.example = org.example:{x}:+\n");
+        assertNull(rules.match("org.apache.commons").getDependency("org.apache.commons"));
+        assertNull(rules.match("org.example.core").getDependency("org.example.core"));
+    }
+
+    @Test
+    public void laterFilesReplaceRulesWithTheSamePrefix() throws IOException {
+        ResolverRules rules = parse("# built-in\njavax = ignore\njavax.jmdns = lookup\n",
+                "\n  javax.jmdns = org.jmdns:jmdns:3.5.1  \n");
+        Rule rule = rules.match("javax.jmdns");
+        assertEquals(Action.DEPENDENCY, rule.getAction());
+        assertEquals(Dependency.of("jmdns", "org.jmdns", "3.5.1"), rule.getDependency("javax.jmdns"));
+
+        List<String> prefixes = new ArrayList<>();
+        for (Rule r : rules.getRules()) {
+            prefixes.add(r.getPrefix());
+        }
+        assertEquals(Arrays.asList("javax", "javax.jmdns"), prefixes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingSeparatorIsRejected() throws IOException {
+        parse("org.example org.example:example:+\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incompleteCoordinatesAreRejected() throws IOException {
+        parse("org.example = org.example:example\n");
+    }
+
+    @Test
+    public void builtInRulesAreValid() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(getClass().getResource("/resolverRules.txt").openStream()))) {
+            ResolverRules rules = ResolverRules.parse(reader);
+            assertEquals(Action.ERROR, rules.match("org.eclipse.smarthome.unknown").getAction());
+            assertEquals(Action.IGNORE, rules.match("javax.annotation").getAction());
+            assertEquals(Action.LOOKUP, rules.match("javax.jmdns").getAction());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestClassifierTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Path> sources = new ArrayList<>();
+
+    private static String superclass(String className, String source) {
+        return TestClassifier.findSuperclass(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)), className);
+    }
+
+    private Path source(String className, String content) throws IOException {
+        Path source = folder.getRoot().toPath().resolve(className + ".java");
+        Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+        sources.add(source);
+        return source;
+    }
+
+    @Test
+    public void simpleSuperclass() {
+        assertEquals("Base", superclass("MyTest", "package org.foo;\npublic class MyTest extends Base {\n}\n"));
+        assertEquals("Base", superclass("MyTest", "class\tMyTest\n\textends\n  Base{}"));
+        assertNull(superclass("MyTest", "public class MyTest implements Runnable { }"));
+        assertNull(superclass("MyTest", "public class Other extends Base { }"));
+        assertNull(superclass("MyTest", "public class MyTest"));
+    }
+
+    @Test
+    public void genericsAreSkipped() {
+        assertEquals("Base", superclass("MyTest", "public class MyTest extends Base<String> { }"));
+        assertEquals("Base", superclass("MyTest",
+                "public class MyTest<T extends Comparable<T>, U extends List<Map<String, T>>> extends Base<T> { }"));
+        assertNull(superclass("MyTest", "public class MyTest<T extends Base> implements Runnable { }"));
+    }
+
+    @Test
+    public void qualifiedSuperclassesAreSimpleNames() {
+        assertEquals("JavaOSGiTest",
+                superclass("MyTest", "public class MyTest extends org.eclipse.smarthome.test.java.JavaOSGiTest { }"));
+        assertEquals("Inner", superclass("MyTest", "public class MyTest extends Outer.Inner { }"));
+    }
+
+    @Test
+    public void nameMustBeAWholeIdentifierAfterClass() {
+        assertEquals("Base", superclass("MyTest",
+                "import org.foo.MyTestBase;\n" //
+                        + "public class MyTestHelper extends Wrong { }\n" //
+                        + "public class MyTest extends Base { }\n"));
+        assertEquals("Base", superclass("MyTest",
+                "public subclass MyTest extends Wrong { }\npublic class MyTest extends Base { }\n"));
+        assertNull(superclass("MyTest", "MyTest extends Base"));
+    }
+
+    @Test
+    public void commentsAndLiteralsMentioningTheClassAreSkipped() {
+        assertEquals("Base", superclass("MyTest",
+                "// The class MyTest extends Wrong\n" //
+                        + "/* class MyTest extends Wrong */\n" //
+                        + "/**\n * Old: class MyTest extends Wrong\n */\n" //
+                        + "public class /* comment */ MyTest extends Base {\n" //
+                        + "    String s = \"class MyTest extends Wrong\";\n" //
+                        + "}\n"));
+        assertEquals("Base", superclass("MyTest",
+                "@Description(\"class MyTest extends \\\"Wrong\\\"\") char c = '\"';\n" //
+                        + "public class MyTest extends Base { }\n"));
+    }
+
+    @Test
+    public void unterminatedCommentsAndLiterals() {
+        assertNull(superclass("MyTest", "/* class MyTest extends Wrong"));
+        assertNull(superclass("MyTest", "String s = \"class MyTest extends Wrong"));
+        assertEquals("Base", superclass("MyTest", "String s = \"unterminated\nclass MyTest extends Base { }"));
+    }
+
+    @Test
+    public void indirectIntegrationTests() throws IOException {
+        Path base = source("BaseIT", "public abstract class BaseIT extends JavaOSGiTest { }\n");
+        Path middle = source("MiddleIT", "/** Not a BaseIT */\npublic abstract class MiddleIT extends BaseIT { }\n");
+        Path deep = source("DeepIT", "public class DeepIT extends org.foo.MiddleIT { }\n");
+        Path generic = source("GenericIT", "public class GenericIT<T extends Unit> extends MiddleIT { }\n");
+        Path unit = source("UnitTest", "// Unlike DeepIT a unit test\nclass UnitTest extends Base { }\n");
+        Path unknown = source("OtherTest", "public class OtherTest extends Unknown { }\n");
+        Path self = source("SelfTest", "public class SelfTest extends SelfTest { }\n");
+
+        TestClassifier classifier = TestClassifier.scan(sources);
+        for (Path source : sources) {
+            assertTrue(classifier.isScanned(source));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(base, middle, deep, generic)),
+                classifier.findIntegrationTests(sources));
+        assertFalse(classifier.findIntegrationTests(sources).contains(unit));
+        assertFalse(classifier.findIntegrationTests(sources).contains(unknown));
+        assertFalse(classifier.findIntegrationTests(sources).contains(self));
+    }
+
+    @Test
+    public void superclassesOfOtherProjectsAreNotFollowed() throws IOException {
+        source("BaseIT", "public abstract class BaseIT extends JavaOSGiTest { }\n");
+        Path deep = source("DeepIT", "public class DeepIT extends BaseIT { }\n");
+        TestClassifier classifier = TestClassifier.scan(sources);
+        assertTrue(classifier.findIntegrationTests(Arrays.asList(deep)).isEmpty());
+    }
+
+    @Test
+    public void largeSourcesCanBeMovedAfterTheScan() throws IOException {
+        StringBuilder content = new StringBuilder("public class LargeIT extends BaseIT {\n");
+        while (content.length() < 100 * 1024) {
+            content.append("    // padding padding padding padding padding padding padding padding\n");
+        }
+        content.append("}\n");
+        Path large = source("LargeIT", content.toString());
+        source("BaseIT", "public abstract class BaseIT extends JavaOSGiTest { }\n");
+        Path small = source("SmallTest", "public class SmallTest { }\n");
+
+        TestClassifier classifier = TestClassifier.scan(sources);
+        assertTrue(classifier.findIntegrationTests(sources).contains(large));
+        assertFalse(classifier.findIntegrationTests(sources).contains(small));
+        Files.move(large, large.resolveSibling("Moved.java"));
+        assertFalse(Files.exists(large));
+    }
+}
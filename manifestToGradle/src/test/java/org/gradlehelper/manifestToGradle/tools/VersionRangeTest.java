@@ -0,0 +1,81 @@
+package org.gradlehelper.manifestToGradle.tools;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class VersionRangeTest {
+    private static boolean includes(String range, String version) {
+        return VersionRange.parse(range).includes(new ComparableVersion(version));
+    }
+
+    @Test
+    public void singleVersionIsTheFloor() {
+        assertTrue(includes("1.0", "1.0"));
+        assertTrue(includes("1.0", "1.0.1"));
+        assertTrue(includes(" 1.0 ", "99"));
+        assertFalse(includes("1.0", "0.9.9"));
+    }
+
+    @Test
+    public void inclusiveAndExclusiveBounds() {
+        assertTrue(includes("[1.0,2.0)", "1.0"));
+        assertTrue(includes("[1.0,2.0)", "1.9.9"));
+        assertFalse(includes("[1.0,2.0)", "2.0"));
+        assertFalse(includes("(1.0,2.0]", "1.0"));
+        assertTrue(includes("(1.0,2.0]", "1.0.1"));
+        assertTrue(includes("(1.0,2.0]", "2.0"));
+        assertFalse(includes("(1.0,2.0]", "2.0.1"));
+        assertTrue(includes("[ 1.0 , 2.0 ]", "2.0"));
+    }
+
+    @Test
+    public void trailingZerosAreEqual() {
+        assertTrue(includes("[1,2)", "1.0.0"));
+        assertFalse(includes("[1,2)", "2.0.0"));
+    }
+
+    @Test
+    public void qualifiersAreOrdered() {
+        assertFalse(includes("[1.0,2.0)", "1.0-SNAPSHOT"));
+        assertTrue(includes("[1.0,2.0)", "2.0-SNAPSHOT"));
+    }
+
+    @Test
+    public void invalidRanges() {
+        for (String range : new String[] { "", "  ", "[1.0]", "[1.0,2.0", "(1.0,2.0}", "[,2.0)", "[1.0, )" }) {
+            try {
+                VersionRange.parse(range);
+                fail("Expected an invalid range: " + range);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void highestMatch() {
+        VersionRange range = VersionRange.parse("[1.0,2.0)");
+        assertEquals("1.10", range.highestMatch(Arrays.asList("1.2", "1.10", "2.0", "0.9", "1.9")));
+        assertEquals("1.0", range.highestMatch(Arrays.asList("1.0", "2.1")));
+        assertNull(range.highestMatch(Arrays.asList("0.1", "2.0")));
+        assertNull(range.highestMatch(Collections.emptyList()));
+    }
+
+    @Test
+    public void highestMatchIgnoresDynamicAndMissingVersions() {
+        VersionRange range = VersionRange.parse("1.0");
+        assertEquals("1.5", range.highestMatch(Arrays.asList("+", null, "", "1.+", "1.5")));
+        assertNull(range.highestMatch(Arrays.asList("+", "")));
+    }
+
+    @Test
+    public void string() {
+        assertEquals("[1.0,2.0)", VersionRange.parse(" [ 1.0 , 2.0 ) ").toString());
+        assertEquals("(1.0,2.0]", VersionRange.parse("(1.0,2.0]").toString());
+        assertEquals("1.0", VersionRange.parse("1.0").toString());
+    }
+}